@@ -15,6 +15,7 @@ import com.yelp.android.bento.core.ComponentController
 import com.yelp.android.bento.core.ComponentGroup
 import com.yelp.android.bento.core.ComponentViewHolder
 import com.yelp.android.bento.core.ComponentVisibilityListener
+import com.yelp.android.bento.core.ViewHolderFactories
 import com.yelp.android.bento.utils.AccordionList
 
 private const val MAX_ITEM_TYPES_PER_ADAPTER = 4096
@@ -184,7 +185,7 @@ class ListViewComponentController(val listView: ListView) :
         private fun createFreshView(position: Int, parent: ViewGroup): View {
             val holderType: Class<out ComponentViewHolder<Any?, Any?>> =
                     components.getHolderType(position)
-            val holder = holderType.newInstance()
+            val holder = ViewHolderFactories.create(holderType)
             val view = if (holder is ListViewComponentViewHolder) {
                 holder.inflate(components.getPresenter(position) as ListAdapterComponent.Wrapper,
                         parent)
@@ -257,9 +258,10 @@ class ListViewComponentController(val listView: ListView) :
 
         override fun getItem(position: Int) = components.getItem(position)
 
-        override fun hasStableIds() = false
+        override fun hasStableIds() = components.hasStableIds()
 
-        override fun getItemId(position: Int) = position.toLong()
+        override fun getItemId(position: Int) =
+                if (components.hasStableIds()) components.getItemId(position) else position.toLong()
 
         override fun getCount() = components.span
 
@@ -1,10 +1,12 @@
 package com.yelp.android.bento.componentcontrollers;
 
+import android.os.Looper;
 import android.util.Log;
 import android.view.View;
 import android.view.ViewGroup;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.ItemTouchHelper;
 import androidx.recyclerview.widget.LinearSmoothScroller;
@@ -14,23 +16,28 @@ import androidx.recyclerview.widget.RecyclerView.OnScrollListener;
 import androidx.recyclerview.widget.RecyclerView.Orientation;
 import androidx.recyclerview.widget.RecyclerView.ViewHolder;
 
-import com.google.common.collect.HashBiMap;
 import com.yelp.android.bento.core.AsyncInflationBridge;
 import com.yelp.android.bento.core.AsyncInflationStrategy;
 import com.yelp.android.bento.core.BentoLayoutManager;
+import com.yelp.android.bento.core.BentoViewPoolManager;
 import com.yelp.android.bento.core.Component;
 import com.yelp.android.bento.core.Component.ComponentDataObserver;
 import com.yelp.android.bento.core.ComponentController;
 import com.yelp.android.bento.core.ComponentControllerX;
 import com.yelp.android.bento.core.ComponentGroup;
-import com.yelp.android.bento.core.ComponentGroup.ComponentGroupDataObserver;
+import com.yelp.android.bento.core.ComponentListDiff;
+import com.yelp.android.bento.core.ComponentListDiff.KeyProvider;
+import com.yelp.android.bento.core.ComponentListDiffer;
 import com.yelp.android.bento.core.ComponentViewHolder;
 import com.yelp.android.bento.core.ComponentVisibilityListener;
 import com.yelp.android.bento.core.ComponentVisibilityListener.LayoutManagerHelper;
 import com.yelp.android.bento.core.ListItemTouchCallback;
 import com.yelp.android.bento.core.OnItemMovedPositionListener;
 import com.yelp.android.bento.core.SmartAsyncInflationCache;
+import com.yelp.android.bento.core.ViewHolderFactories;
 import com.yelp.android.bento.core.ViewHolderWrapper;
+import com.yelp.android.bento.core.ViewPoolPrewarmer;
+import com.yelp.android.bento.core.ViewTypeRegistry;
 import com.yelp.android.bento.utils.AccordionList.Range;
 import com.yelp.android.bento.utils.AccordionList.RangedValue;
 import com.yelp.android.bento.utils.BentoSettings;
@@ -38,9 +45,11 @@ import com.yelp.android.bento.utils.Sequenceable;
 
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -51,14 +60,16 @@ public class RecyclerViewComponentController
         implements ComponentController, OnItemMovedPositionListener {
 
     private static final int INVALID_COMPONENT_INDEX = -1;
+
+    // The pool policy states of a view type in mPoolPolicyStates.
+    private static final byte POOL_POLICY_UNSEEN = 0;
+    private static final byte POOL_POLICY_PENDING = 1;
+    private static final byte POOL_POLICY_APPLIED = 2;
+
     private final RecyclerView.Adapter<ViewHolderWrapper> mRecyclerViewAdapter;
     private final ComponentGroup mComponentGroup;
-    private final Map<Component, Set<Class<? extends ComponentViewHolder>>>
-            mComponentViewHolderSetMap;
-    private final Map<Class<? extends ComponentViewHolder>, Integer> mViewTypeReferenceCounts;
-    private final HashBiMap<Class<? extends ComponentViewHolder>, Integer> mViewTypeMap;
     private final RecyclerView mRecyclerView;
-    private final RecyclerView.RecycledViewPool mRecycledViewPool;
+    private RecyclerView.RecycledViewPool mRecycledViewPool;
     private ComponentVisibilityListener mComponentVisibilityListener;
     private OnScrollListener mOnScrollListener;
     private AdapterDataObserver mAdapterDataObserver;
@@ -66,6 +77,8 @@ public class RecyclerViewComponentController
     private LinearSmoothScroller mSmoothScroller;
     private ItemTouchHelper mItemTouchHelper;
     public AsyncInflationBridge mAsyncInflationBridge;
+    private final ComponentListDiffer mComponentListDiffer;
+    @VisibleForTesting ViewPoolPrewarmer mViewPoolPrewarmer;
 
     @RecyclerView.Orientation private int mOrientation;
 
@@ -74,6 +87,20 @@ public class RecyclerViewComponentController
     // enabled.
     private String mAsyncCacheKey = null;
 
+    // True while a committed batch is notifying the adapter, so spans are only set up once.
+    private boolean mCommittingBatch = false;
+
+    private PoolPolicy mPoolPolicy = PoolPolicy.COMPONENT_HINTS;
+
+    // Indexed by view type, whether the pool policy was applied to the view type.
+    private byte[] mPoolPolicyStates = new byte[0];
+
+    // The number of view types whose pool policy is applied when a view of the type is next bound.
+    private int mPendingPoolPolicies = 0;
+
+    // The prewarmed view holder the adapter returns from onCreateViewHolder instead of a new one.
+    @Nullable private ViewHolderWrapper mPrewarmedViewHolder = null;
+
     /**
      * Creates a new {@link RecyclerViewComponentController} and automatically attaches itself to
      * the {@link RecyclerView}. In order to make the lanes, this component controller will set the
@@ -121,6 +148,21 @@ public class RecyclerViewComponentController
             @NonNull RecyclerView recyclerView,
             @Orientation int orientation,
             boolean asyncInflationEnabled) {
+        this(recyclerView, orientation, asyncInflationEnabled, false);
+    }
+
+    /**
+     * Creates a new {@link RecyclerViewComponentController} like {@link
+     * #RecyclerViewComponentController(RecyclerView, int, boolean)}. Passing true for
+     * 'hasStableIds' gives the adapter stable IDs, so the RecyclerView can keep views across
+     * changes to the whole data set and animate moves. Every component added to the controller
+     * must then have {@link Component#hasStableIds() stable IDs}.
+     */
+    public RecyclerViewComponentController(
+            @NonNull RecyclerView recyclerView,
+            @Orientation int orientation,
+            boolean asyncInflationEnabled,
+            boolean hasStableIds) {
         mAsyncInflationEnabled = asyncInflationEnabled;
         if (asyncInflationEnabled) {
             mAsyncInflationBridge = new AsyncInflationBridge(recyclerView);
@@ -128,55 +170,49 @@ public class RecyclerViewComponentController
         }
         mOrientation = orientation;
         mRecyclerViewAdapter = new RecyclerViewAdapter();
+        // The adapter can't change this once it's observed by the RecyclerView.
+        mRecyclerViewAdapter.setHasStableIds(hasStableIds);
         mComponentGroup = new ComponentGroup();
         mComponentGroup.registerComponentDataObserver(
                 new ComponentDataObserver() {
                     @Override
                     public void onChanged() {
                         mRecyclerViewAdapter.notifyDataSetChanged();
-                        setupComponentSpans();
+                        onComponentGroupChanged();
                     }
 
                     @Override
                     public void onItemRangeChanged(int positionStart, int itemCount) {
                         mRecyclerViewAdapter.notifyItemRangeChanged(positionStart, itemCount);
-                        setupComponentSpans();
+                        onComponentGroupChanged();
+                    }
+
+                    @Override
+                    public void onItemRangeChanged(
+                            int positionStart, int itemCount, @NonNull Object payload) {
+                        mRecyclerViewAdapter.notifyItemRangeChanged(
+                                positionStart, itemCount, payload);
+                        onComponentGroupChanged();
                     }
 
                     @Override
                     public void onItemRangeInserted(int positionStart, int itemCount) {
                         mRecyclerViewAdapter.notifyItemRangeInserted(positionStart, itemCount);
-                        setupComponentSpans();
+                        onComponentGroupChanged();
                     }
 
                     @Override
                     public void onItemRangeRemoved(int positionStart, int itemCount) {
                         mRecyclerViewAdapter.notifyItemRangeRemoved(positionStart, itemCount);
-                        setupComponentSpans();
+                        onComponentGroupChanged();
                     }
 
                     @Override
                     public void onItemMoved(int fromPosition, int toPosition) {
                         mRecyclerViewAdapter.notifyItemMoved(fromPosition, toPosition);
-                        setupComponentSpans();
+                        onComponentGroupChanged();
                     }
                 });
-        mComponentGroup.registerComponentGroupObserver(
-                new ComponentGroupDataObserver() {
-                    @Override
-                    public void onChanged() {
-                        // Do nothing.
-                    }
-
-                    @Override
-                    public void onComponentRemoved(Component component) {
-                        cleanupComponent(component);
-                    }
-                });
-
-        mComponentViewHolderSetMap = new HashMap<>();
-        mViewTypeReferenceCounts = new HashMap<>();
-        mViewTypeMap = HashBiMap.create();
         mRecyclerView = recyclerView;
         mLayoutManager =
                 new BentoLayoutManager(recyclerView.getContext(), mComponentGroup, mOrientation);
@@ -194,6 +230,12 @@ public class RecyclerViewComponentController
         mRecyclerView.setAdapter(mRecyclerViewAdapter);
         mRecyclerView.setLayoutManager(mLayoutManager);
         mRecycledViewPool = mRecyclerView.getRecycledViewPool();
+        mComponentListDiffer = new ComponentListDiffer(mRecyclerView);
+        mViewPoolPrewarmer = new ViewPoolPrewarmer(mRecyclerView);
+        BentoViewPoolManager viewPoolManager = BentoSettings.getViewPoolManager();
+        if (viewPoolManager != null) {
+            setViewPoolManager(viewPoolManager);
+        }
         setupComponentSpans();
         addVisibilityListeners();
     }
@@ -232,6 +274,7 @@ public class RecyclerViewComponentController
     @NonNull
     @Override
     public RecyclerViewComponentController addComponent(@NonNull Component component) {
+        checkHasStableIds(component);
         if (!mAsyncInflationEnabled) {
             addComponentInternal(component);
         } else {
@@ -248,6 +291,7 @@ public class RecyclerViewComponentController
     @NonNull
     @Override
     public ComponentController addComponent(@NonNull ComponentGroup componentGroup) {
+        checkHasStableIds(componentGroup);
         if (!mAsyncInflationEnabled) {
             addComponentInternal(componentGroup);
         } else {
@@ -265,6 +309,7 @@ public class RecyclerViewComponentController
     @Override
     public RecyclerViewComponentController addComponent(
             int index, @NonNull final Component component) {
+        checkHasStableIds(component);
         if (!mAsyncInflationEnabled) {
             addComponentInternal(index, component);
         } else {
@@ -281,6 +326,7 @@ public class RecyclerViewComponentController
     @NonNull
     @Override
     public ComponentController addComponent(int index, @NonNull ComponentGroup componentGroup) {
+        checkHasStableIds(componentGroup);
         if (!mAsyncInflationEnabled) {
             addComponentInternal(index, componentGroup);
         } else {
@@ -298,23 +344,18 @@ public class RecyclerViewComponentController
     @Override
     public RecyclerViewComponentController addAll(
             @NonNull Collection<? extends Component> components) {
+        for (Component component : components) {
+            checkHasStableIds(component);
+        }
         if (!mAsyncInflationEnabled) {
-            mComponentGroup.addAll(components);
-            for (Component component : components) {
-                shareViewPool(component);
-                mComponentVisibilityListener.onComponentAdded(component);
-            }
+            addAllInternal(components);
         } else {
-            for (Component component : components) {
-                mAsyncInflationBridge.asyncInflateViewsForComponent(
-                        component,
-                        () -> {
-                            addComponentInternal(component);
-                            shareViewPool(component);
-                            mComponentVisibilityListener.onComponentAdded(component);
-                            return null;
-                        });
-            }
+            mAsyncInflationBridge.asyncInflateViewsForComponents(
+                    new ArrayList<>(components),
+                    addedComponents -> {
+                        addAllInternal(withoutAddedComponents(addedComponents));
+                        return null;
+                    });
         }
         return this;
     }
@@ -323,6 +364,7 @@ public class RecyclerViewComponentController
     @Override
     public RecyclerViewComponentController replaceComponent(
             int index, @NonNull Component component) {
+        checkHasStableIds(component);
         mComponentGroup.replaceComponent(index, component);
         return this;
     }
@@ -330,6 +372,7 @@ public class RecyclerViewComponentController
     @NonNull
     @Override
     public ComponentController replaceComponent(int index, @NonNull ComponentGroup componentGroup) {
+        checkHasStableIds(componentGroup);
         mComponentGroup.replaceComponent(index, componentGroup);
         return this;
     }
@@ -353,6 +396,7 @@ public class RecyclerViewComponentController
 
     @Override
     public void clear() {
+        mComponentListDiffer.cancel();
         mComponentGroup.clear();
         removeVisibilityListeners();
         addVisibilityListeners();
@@ -461,6 +505,195 @@ public class RecyclerViewComponentController
         return this;
     }
 
+    /**
+     * @return The total time components added to this controller waited for the views of earlier
+     *     components to be inflated, in milliseconds. It's always 0 when async inflation is
+     *     disabled.
+     */
+    public long getAsyncInflationLockWaitTimeMs() {
+        return mAsyncInflationEnabled ? mAsyncInflationBridge.getLockWaitTimeMs() : 0;
+    }
+
+    /**
+     * @return The longest time a component added to this controller waited for the views of
+     *     earlier components to be inflated, in milliseconds. It's always 0 when async inflation is
+     *     disabled.
+     */
+    public long getAsyncInflationMaxLockWaitTimeMs() {
+        return mAsyncInflationEnabled ? mAsyncInflationBridge.getMaxLockWaitTimeMs() : 0;
+    }
+
+    /**
+     * Starts a batch of changes to this controller. Until the matching {@link #commit()}, the
+     * adapter isn't notified of added, removed or changed components. On commit, the changes are
+     * merged into as few adapter notifications as possible and the spans are only set up once, so
+     * populating a page results in a single layout pass. Batches may be nested.
+     *
+     * <p>The batch must be committed before returning to the main looper, since the RecyclerView
+     * could otherwise lay out positions the adapter hasn't been told about yet. Prefer {@link
+     * #batch(Runnable)}, which commits even if the changes throw.
+     *
+     * <p>See: {@link ComponentGroup#beginBatch()}
+     */
+    public void beginBatch() {
+        mComponentGroup.beginBatch();
+    }
+
+    /**
+     * Ends a batch of changes started with {@link #beginBatch()}, notifying the adapter of the
+     * merged changes if this was the outermost batch.
+     *
+     * @throws IllegalStateException if no batch was started.
+     */
+    public void commit() {
+        mCommittingBatch = true;
+        try {
+            mComponentGroup.commit();
+        } finally {
+            mCommittingBatch = false;
+        }
+        if (!mComponentGroup.isInBatch()) {
+            setupComponentSpans();
+            warnIfLostStableIds();
+        }
+    }
+
+    /**
+     * Runs the provided changes to this controller in a batch, committing it before returning
+     * even if the changes throw.
+     *
+     * @param changes Adds, removes and changes components of this controller.
+     * @throws IllegalStateException if not called on the main thread.
+     */
+    public void batch(@NonNull Runnable changes) {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            throw new IllegalStateException("batch() must be called on the main thread.");
+        }
+        beginBatch();
+        try {
+            changes.run();
+        } finally {
+            commit();
+        }
+    }
+
+    /**
+     * Replaces the components of this controller with the provided list. The current and new
+     * components are matched by identity and diffed on a background thread, after which only the
+     * resulting insertions, moves and removals are applied on the main thread in a single batch.
+     * Components kept from the current list keep their views. Submitting again before the diff
+     * was applied discards the earlier submission, as does destroying the screen.
+     *
+     * @param components The components this controller should hold.
+     */
+    @NonNull
+    public RecyclerViewComponentController submitComponents(
+            @NonNull List<? extends Component> components) {
+        return submitComponents(components, null);
+    }
+
+    /**
+     * Like {@link #submitComponents(List)}, but matches the current and new components by the keys
+     * of the provided {@link KeyProvider}. A new component with the same key as a current one takes
+     * its place and its items are reported as changed, so their views are bound again rather than
+     * recreated. The key provider is called on the background thread.
+     *
+     * @param components The components this controller should hold.
+     * @param keyProvider Provides the keys to match components by, or null to match by identity.
+     */
+    @NonNull
+    public RecyclerViewComponentController submitComponents(
+            @NonNull List<? extends Component> components, @Nullable KeyProvider keyProvider) {
+        for (Component component : components) {
+            checkHasStableIds(component);
+        }
+        mComponentListDiffer.submit(
+                mComponentGroup,
+                components,
+                keyProvider,
+                diff -> {
+                    applyComponentListDiff(diff);
+                    return null;
+                });
+        return this;
+    }
+
+    /**
+     * Sets the policy deciding how many views of each holder type the recycled view pool keeps.
+     * The policy is applied once per holder type, when the controller first creates a view of the
+     * type and binds it, and holder types seen before get the new policy the next time they're
+     * bound. By default the pool follows the
+     * {@link Component#getRecyclePoolHint(Class) hints} of the components.
+     */
+    public RecyclerViewComponentController setPoolPolicy(@NonNull PoolPolicy poolPolicy) {
+        mPoolPolicy = poolPolicy;
+        resetPoolPolicy();
+        return this;
+    }
+
+    /**
+     * Opts this controller in to sharing its recycled view pool with every controller using the
+     * provided manager in the same activity and theme, so view holders survive navigating between
+     * screens and pager pages. Controllers opt in automatically when a manager is set in {@link
+     * BentoSettings#setViewPoolManager(BentoViewPoolManager)}.
+     */
+    public RecyclerViewComponentController setViewPoolManager(
+            @NonNull BentoViewPoolManager viewPoolManager) {
+        RecyclerView.RecycledViewPool pool = viewPoolManager.getPool(mRecyclerView.getContext());
+        if (pool == null || pool == mRecycledViewPool) {
+            return this;
+        }
+        mRecycledViewPool = pool;
+        mRecyclerView.setRecycledViewPool(pool);
+        resetPoolPolicy();
+        for (int i = 0; i < mComponentGroup.getSize(); i++) {
+            shareViewPool(mComponentGroup.get(i));
+        }
+        return this;
+    }
+
+    /**
+     * Sets the number of views that left the screen the RecyclerView keeps bound to their
+     * position, so scrolling back to them needs neither a bind nor a trip through the pool.
+     *
+     * <p>See: {@link RecyclerView#setItemViewCacheSize(int)}
+     */
+    public RecyclerViewComponentController setItemViewCacheSize(int size) {
+        mRecyclerView.setItemViewCacheSize(size);
+        return this;
+    }
+
+    /**
+     * Sets the number of items prefetched when the RecyclerView is nested in another scrolling
+     * list and comes into view, such as the items of a carousel.
+     *
+     * <p>See: {@link androidx.recyclerview.widget.LinearLayoutManager#setInitialPrefetchItemCount}
+     */
+    public RecyclerViewComponentController setInitialPrefetchItemCount(int itemCount) {
+        mLayoutManager.setInitialPrefetchItemCount(itemCount);
+        return this;
+    }
+
+    /**
+     * Creates and inflates view holders of the provided types on background threads and puts them
+     * in the recycled view pool. The RecyclerView then uses them through its normal reuse path,
+     * including for holder types that only show up after the screen is displayed. Prewarming a
+     * holder type stops once the pool holds as many views of it as its limit allows.
+     *
+     * @param counts The number of view holders to prepare for each holder type.
+     */
+    public RecyclerViewComponentController prewarm(
+            @NonNull Map<Class<? extends ComponentViewHolder>, Integer> counts) {
+        for (Map.Entry<Class<? extends ComponentViewHolder>, Integer> entry : counts.entrySet()) {
+            Class<? extends ComponentViewHolder> holderType = entry.getKey();
+            mViewPoolPrewarmer.prewarm(
+                    holderType,
+                    entry.getValue(),
+                    (viewHolder, view) -> putPrewarmedViewHolder(holderType, viewHolder, view));
+        }
+        return this;
+    }
+
     public void onRecyclerViewDetachedFromWindow() {
         mComponentVisibilityListener.onComponentGroupVisibilityChanged(false);
     }
@@ -491,6 +724,55 @@ public class RecyclerViewComponentController
         addComponentInternal(INVALID_COMPONENT_INDEX, component);
     }
 
+    /** Adds the components in a single batch, so the adapter is notified once. */
+    private void addAllInternal(@NonNull Collection<? extends Component> components) {
+        beginBatch();
+        try {
+            mComponentGroup.addAll(components);
+            for (Component component : components) {
+                shareViewPool(component);
+                mComponentVisibilityListener.onComponentAdded(component);
+            }
+        } finally {
+            commit();
+        }
+    }
+
+    /**
+     * Returns the given components less the ones already added, so one component added twice
+     * doesn't fail the rest of an async batch the way it would fail a single async add.
+     */
+    @NonNull
+    private List<Component> withoutAddedComponents(
+            @NonNull Collection<? extends Component> components) {
+        Set<Component> seen = new HashSet<>(components.size());
+        List<Component> newComponents = new ArrayList<>(components.size());
+        for (Component component : components) {
+            if (seen.add(component) && !mComponentGroup.contains(component)) {
+                newComponents.add(component);
+            }
+        }
+        return newComponents;
+    }
+
+    private void applyComponentListDiff(@NonNull ComponentListDiff diff) {
+        beginBatch();
+        try {
+            diff.applyTo(mComponentGroup);
+        } finally {
+            commit();
+        }
+        if (mAsyncInflationEnabled) {
+            for (Component component : diff.getRemovedComponents()) {
+                mAsyncInflationBridge.trackComponentRemoval(component);
+            }
+        }
+        for (Component component : diff.getInsertedComponents()) {
+            shareViewPool(component);
+            mComponentVisibilityListener.onComponentAdded(component);
+        }
+    }
+
     private void addVisibilityListeners() {
         mComponentVisibilityListener =
                 new ComponentVisibilityListener(
@@ -538,59 +820,6 @@ public class RecyclerViewComponentController
         mRecyclerViewAdapter.unregisterAdapterDataObserver(mAdapterDataObserver);
     }
 
-    /**
-     * Gets a view type from a {@link Component} for the specified position. This will return a
-     * unique integer for each unique view type and the same integer for the same view types.
-     */
-    @SuppressWarnings("unchecked") // Unchecked Component generics.
-    private int getViewTypeFromComponent(int position) {
-        Class<? extends ComponentViewHolder> holderType =
-                mComponentGroup.getHolderTypeInternal(position);
-        Component component = mComponentGroup.componentAt(position);
-
-        if (!mViewTypeMap.containsKey(holderType)) {
-            mViewTypeMap.put(holderType, holderType.hashCode());
-            Set<Class<? extends ComponentViewHolder>> viewHolderSet =
-                    mComponentViewHolderSetMap.get(component);
-            if (viewHolderSet == null) {
-                viewHolderSet = new HashSet<>();
-                mComponentViewHolderSetMap.put(component, viewHolderSet);
-            }
-            viewHolderSet.add(holderType);
-
-            if (!mViewTypeReferenceCounts.containsKey(holderType)) {
-                mViewTypeReferenceCounts.put(holderType, 0);
-            }
-            mViewTypeReferenceCounts.put(holderType, mViewTypeReferenceCounts.get(holderType) + 1);
-        }
-
-        return mViewTypeMap.get(holderType);
-    }
-
-    /**
-     * Run after a component is removed from the controller. It cleans up different references to
-     * the component in view type maps.
-     *
-     * @param component The component that was removed.
-     */
-    private void cleanupComponent(Component component) {
-        Set<Class<? extends ComponentViewHolder>> viewHolderSet =
-                mComponentViewHolderSetMap.get(component);
-        if (viewHolderSet != null) {
-            for (Class<? extends ComponentViewHolder> viewHolder : viewHolderSet) {
-                int remainingRefs = mViewTypeReferenceCounts.get(viewHolder) - 1;
-                if (remainingRefs == 0) {
-                    mViewTypeMap.remove(viewHolder);
-                    mViewTypeReferenceCounts.remove(viewHolder);
-                } else {
-                    mViewTypeReferenceCounts.put(viewHolder, remainingRefs);
-                }
-            }
-        }
-
-        mComponentViewHolderSetMap.remove(component);
-    }
-
     /**
      * Allows you to share the view pool of the RecyclerView this component controller is managing
      * with another component (such as a carousel component).
@@ -609,18 +838,90 @@ public class RecyclerViewComponentController
     }
 
     /**
-     * Uses reflections to instantiate a ComponentViewHolder of the specified type. For this reason,
-     * all subclasses of ComponentViewHolder must have a no-arg constructor. <br>
+     * Instantiates a ComponentViewHolder of the specified type with the factory registered in
+     * {@link ViewHolderFactories}. Types without a factory are instantiated with reflection, so
+     * they must have a no-arg constructor. <br>
      * See: {@link ComponentViewHolder}
      *
      * @throws RuntimeException if the specified view holder type could not be instantiated.
      */
     public static ComponentViewHolder constructViewHolder(
             Class<? extends ComponentViewHolder> viewHolderType) {
+        return ViewHolderFactories.create(viewHolderType);
+    }
+
+    /**
+     * Puts a prewarmed view holder in the pool. It goes through the adapter's {@link
+     * RecyclerView.Adapter#createViewHolder}, which gives it the view type the pool files it under.
+     * The pool drops view holders beyond its limit for the view type, which isn't raised.
+     *
+     * @return Whether the pool had room for the view holder, so prewarming the type should go on.
+     */
+    private boolean putPrewarmedViewHolder(
+            @NonNull Class<? extends ComponentViewHolder> holderType,
+            @NonNull ComponentViewHolder viewHolder,
+            @NonNull View view) {
+        int viewType = ViewTypeRegistry.getViewType(holderType);
+        ViewHolderWrapper wrapper;
+        mPrewarmedViewHolder = new ViewHolderWrapper(view, viewHolder);
         try {
-            return viewHolderType.newInstance();
-        } catch (InstantiationException | IllegalAccessException e) {
-            throw new RuntimeException("Failed to instantiate view holder", e);
+            wrapper = mRecyclerViewAdapter.createViewHolder(mRecyclerView, viewType);
+        } finally {
+            mPrewarmedViewHolder = null;
+        }
+
+        int recycledViews = mRecycledViewPool.getRecycledViewCount(viewType);
+        mRecycledViewPool.putRecycledView(wrapper);
+        return mRecycledViewPool.getRecycledViewCount(viewType) > recycledViews;
+    }
+
+    /**
+     * Registers a view type the first time the controller creates a view of it. The pool policy is
+     * applied when the view is bound, as that's when the component showing it is known.
+     */
+    private void registerViewType(int viewType) {
+        if (viewType >= mPoolPolicyStates.length) {
+            int length = Math.max(viewType + 1, mPoolPolicyStates.length * 2);
+            mPoolPolicyStates = Arrays.copyOf(mPoolPolicyStates, length);
+        }
+        if (mPoolPolicyStates[viewType] == POOL_POLICY_UNSEEN) {
+            mPoolPolicyStates[viewType] = POOL_POLICY_PENDING;
+            mPendingPoolPolicies++;
+        }
+    }
+
+    /** Applies the pool policy to the view type of a bound view if it's still pending. */
+    private void applyPoolPolicy(int position, int viewType) {
+        if (viewType >= mPoolPolicyStates.length
+                || mPoolPolicyStates[viewType] != POOL_POLICY_PENDING) {
+            return;
+        }
+        mPoolPolicyStates[viewType] = POOL_POLICY_APPLIED;
+        mPendingPoolPolicies--;
+
+        int maxRecycledViews =
+                mPoolPolicy.getMaxRecycledViews(
+                        mComponentGroup.findComponentWithIndex(position),
+                        ViewTypeRegistry.getHolderType(viewType));
+        if (maxRecycledViews != Component.NO_POOL_HINT) {
+            mRecycledViewPool.setMaxRecycledViews(viewType, maxRecycledViews);
+        }
+    }
+
+    /** Applies the pool policy again to every registered view type the next time it's bound. */
+    private void resetPoolPolicy() {
+        for (int viewType = 0; viewType < mPoolPolicyStates.length; viewType++) {
+            if (mPoolPolicyStates[viewType] == POOL_POLICY_APPLIED) {
+                mPoolPolicyStates[viewType] = POOL_POLICY_PENDING;
+                mPendingPoolPolicies++;
+            }
+        }
+    }
+
+    private void onComponentGroupChanged() {
+        if (!mCommittingBatch) {
+            setupComponentSpans();
+            warnIfLostStableIds();
         }
     }
 
@@ -628,6 +929,37 @@ public class RecyclerViewComponentController
         mLayoutManager.setSpanCount(mComponentGroup.getNumberLanes());
     }
 
+    /**
+     * Makes sure the component has stable IDs when the controller was created with them, as the
+     * RecyclerView would otherwise mix up the views of items without one. Called where components
+     * are added, before anything changes.
+     *
+     * @throws IllegalStateException if the controller has stable IDs and the component doesn't.
+     */
+    private void checkHasStableIds(@NonNull Component component) {
+        if (mRecyclerViewAdapter.hasStableIds() && !component.hasStableIds()) {
+            throw new IllegalStateException(
+                    component
+                            + " doesn't have stable IDs, but the controller was created with"
+                            + " stable IDs.");
+        }
+    }
+
+    /**
+     * Logs a warning if a nested group lost its stable IDs through changes made to it directly,
+     * which can't be checked before they happen.
+     */
+    private void warnIfLostStableIds() {
+        if (BentoSettings.getLoggingEnabled()
+                && mRecyclerViewAdapter.hasStableIds()
+                && !mComponentGroup.hasStableIds()) {
+            Log.w(
+                    BentoSettings.BENTO_TAG,
+                    "A component without stable IDs was added to a nested group, but the"
+                            + " controller was created with stable IDs.");
+        }
+    }
+
     /**
      * Rather than allowing the RecyclerViewComponentController to extend the
      * RecyclerView.Adapter<ViewHolderWrapper> and exposing all of its public final methods that we
@@ -654,9 +986,13 @@ public class RecyclerViewComponentController
         @SuppressWarnings("unchecked") // Unchecked Component generics.
         @Override
         public ViewHolderWrapper onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            registerViewType(viewType);
+            if (mPrewarmedViewHolder != null) {
+                return mPrewarmedViewHolder;
+            }
             ComponentViewHolder viewHolder = null;
             Class<? extends ComponentViewHolder> viewHolderType =
-                    mViewTypeMap.inverse().get(viewType);
+                    ViewTypeRegistry.getHolderType(viewType);
             if (mAsyncInflationEnabled) {
                 viewHolder = mAsyncInflationBridge.getViewHolder(viewHolderType);
             }
@@ -713,20 +1049,42 @@ public class RecyclerViewComponentController
         @SuppressWarnings("unchecked") // Unchecked Component generics.
         @Override
         public void onBindViewHolder(@NonNull ViewHolderWrapper holder, int position) {
+            if (mPendingPoolPolicies > 0) {
+                applyPoolPolicy(position, holder.getItemViewType());
+            }
             holder.bind(
                     mComponentGroup.getPresenter(position),
                     position,
                     mComponentGroup.getItem(position));
         }
 
+        @Override
+        public void onBindViewHolder(
+                @NonNull ViewHolderWrapper holder, int position, @NonNull List<Object> payloads) {
+            if (payloads.isEmpty()) {
+                onBindViewHolder(holder, position);
+            } else {
+                holder.bind(
+                        mComponentGroup.getPresenter(position),
+                        position,
+                        mComponentGroup.getItem(position),
+                        payloads);
+            }
+        }
+
         @Override
         public int getItemCount() {
             return mComponentGroup.getSpan();
         }
 
+        @Override
+        public long getItemId(int position) {
+            return mComponentGroup.getItemId(position);
+        }
+
         @Override
         public int getItemViewType(int position) {
-            return getViewTypeFromComponent(position);
+            return ViewTypeRegistry.getViewType(mComponentGroup.getHolderTypeInternal(position));
         }
 
         @Override
@@ -779,4 +1137,21 @@ public class RecyclerViewComponentController
     public interface SharesViewPool {
         void sharePool(@NonNull RecyclerView.RecycledViewPool pool);
     }
+
+    /** Decides how many views of each holder type the recycled view pool keeps. */
+    public interface PoolPolicy {
+
+        /** Follows the hints of the components, see {@link Component#getRecyclePoolHint(Class)}. */
+        PoolPolicy COMPONENT_HINTS = Component::getRecyclePoolHint;
+
+        /**
+         * @param component The component that first showed the holder type in this controller.
+         * @param holderType The holder type.
+         * @return The number of recycled views to keep, or {@link Component#NO_POOL_HINT} for the
+         *     default.
+         */
+        int getMaxRecycledViews(
+                @NonNull Component component,
+                @NonNull Class<? extends ComponentViewHolder> holderType);
+    }
 }
@@ -11,7 +11,6 @@ import androidx.recyclerview.widget.RecyclerView;
 import androidx.viewpager.widget.ViewPager;
 import androidx.viewpager2.widget.ViewPager2;
 
-import com.google.common.collect.HashBiMap;
 import com.yelp.android.bento.core.Component;
 import com.yelp.android.bento.core.Component.ComponentDataObserver;
 import com.yelp.android.bento.core.ComponentController;
@@ -19,31 +18,21 @@ import com.yelp.android.bento.core.ComponentGroup;
 import com.yelp.android.bento.core.ComponentGroup.ComponentGroupDataObserver;
 import com.yelp.android.bento.core.ComponentViewHolder;
 import com.yelp.android.bento.core.ViewHolderWrapper;
+import com.yelp.android.bento.core.ViewTypeRegistry;
 import com.yelp.android.bento.utils.AccordionList.Range;
 
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
 
 /**
  * Component controller that can be used at the top-level for adding components to a view pager2.
  */
 public class ViewPager2ComponentController extends RecyclerView.Adapter<ViewHolderWrapper> implements ComponentController {
 
-    private final HashBiMap<Class<? extends ComponentViewHolder>, Integer> mViewTypeMap;
-    private final Map<Component, Set<Class<? extends ComponentViewHolder>>>
-            mComponentViewHolderSetMap;
-    private final Map<Class<? extends ComponentViewHolder>, Integer> mViewTypeReferenceCounts;
     private ComponentGroup mComponentGroup;
     private final ViewPager2 mViewPager;
 
     public ViewPager2ComponentController(@NonNull ViewPager2 viewPager2) {
         setComponentGroup(new ComponentGroup());
-        mComponentViewHolderSetMap = new HashMap<>();
-        mViewTypeReferenceCounts = new HashMap<>();
-        mViewTypeMap = HashBiMap.create();
         mViewPager = viewPager2;
         mViewPager.setAdapter(this);
     }
@@ -52,7 +41,7 @@ public class ViewPager2ComponentController extends RecyclerView.Adapter<ViewHold
     @Override
     public ViewHolderWrapper onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         ComponentViewHolder viewHolder =
-                constructViewHolder(mViewTypeMap.inverse().get(viewType));
+                constructViewHolder(ViewTypeRegistry.getHolderType(viewType));
         return new ViewHolderWrapper(viewHolder.inflate(parent), viewHolder);
     }
 
@@ -193,36 +182,7 @@ public class ViewPager2ComponentController extends RecyclerView.Adapter<ViewHold
 
     @Override
     public int getItemViewType(int position) {
-        return getViewTypeFromComponent(position);
-    }
-
-    /**
-     * Gets a view type from a {@link Component} for the specified position. This will return a
-     * unique integer for each unique view type and the same integer for the same view types.
-     */
-    @SuppressWarnings("unchecked") // Unchecked Component generics.
-    private int getViewTypeFromComponent(int position) {
-        Class<? extends ComponentViewHolder> holderType =
-                mComponentGroup.getHolderTypeInternal(position);
-        Component component = mComponentGroup.componentAt(position);
-
-        if (!mViewTypeMap.containsKey(holderType)) {
-            mViewTypeMap.put(holderType, holderType.hashCode());
-            Set<Class<? extends ComponentViewHolder>> viewHolderSet =
-                    mComponentViewHolderSetMap.get(component);
-            if (viewHolderSet == null) {
-                viewHolderSet = new HashSet<>();
-                mComponentViewHolderSetMap.put(component, viewHolderSet);
-            }
-            viewHolderSet.add(holderType);
-
-            if (!mViewTypeReferenceCounts.containsKey(holderType)) {
-                mViewTypeReferenceCounts.put(holderType, 0);
-            }
-            mViewTypeReferenceCounts.put(holderType, mViewTypeReferenceCounts.get(holderType) + 1);
-        }
-
-        return mViewTypeMap.get(holderType);
+        return ViewTypeRegistry.getViewType(mComponentGroup.getHolderTypeInternal(position));
     }
 
     @Override
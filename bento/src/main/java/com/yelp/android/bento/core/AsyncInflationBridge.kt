@@ -2,25 +2,25 @@ package com.yelp.android.bento.core
 
 import android.util.Log
 import android.view.View
-import androidx.lifecycle.Lifecycle
-import androidx.lifecycle.LifecycleObserver
-import androidx.lifecycle.LifecycleOwner
-import androidx.lifecycle.OnLifecycleEvent
-import androidx.lifecycle.findViewTreeLifecycleOwner
-import androidx.lifecycle.lifecycleScope
 import androidx.recyclerview.widget.RecyclerView
 import com.yelp.android.bento.componentcontrollers.RecyclerViewComponentController.constructViewHolder
 import com.yelp.android.bento.core.AsyncInflationStrategy.BEST_GUESS
 import com.yelp.android.bento.core.AsyncInflationStrategy.DEFAULT
 import com.yelp.android.bento.core.AsyncInflationStrategy.SMART
+import com.yelp.android.bento.core.InflationPriority.ABOVE_THE_FOLD
+import com.yelp.android.bento.core.InflationPriority.SPECULATIVE
+import com.yelp.android.bento.core.InflationPriority.VISIBLE_NEXT
 import com.yelp.android.bento.utils.BentoSettings
+import com.yelp.android.bento.utils.doOnLifecycleDestroy
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.ConcurrentLinkedDeque
-import java.util.concurrent.Executors
-import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
 import kotlin.coroutines.CoroutineContext
 import kotlinx.coroutines.CoroutineDispatcher
 import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Deferred
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.Job
 import kotlinx.coroutines.SupervisorJob
@@ -31,12 +31,9 @@ import kotlinx.coroutines.cancelChildren
 import kotlinx.coroutines.coroutineScope
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.sync.Mutex
-import kotlinx.coroutines.sync.withLock
 import kotlinx.coroutines.withContext
 
 private const val DEFAULT_NUM_ABOVE_FOLD_VIEW_HOLDERS = 5
-private const val MAX_VIEWS = 40
-private const val VIEWS_PER_COMPONENT_THRESHOLD = 10
 
 /**
  * This acts as a bridge between RecyclerViewComponentController and the underlying
@@ -46,16 +43,20 @@ private const val VIEWS_PER_COMPONENT_THRESHOLD = 10
  */
 internal class AsyncInflationBridge @JvmOverloads constructor(
     val recyclerView: RecyclerView,
-    private val asyncInflaterDispatcher: CoroutineDispatcher = BentoAsyncLayoutInflater.dispatcher,
+    // Runs every inflation when set, instead of the scheduler's dispatcher for its priority.
+    private val asyncInflaterDispatcher: CoroutineDispatcher? = null,
     private val defaultBridgeDispatcher: CoroutineDispatcher = dispatcher
 ) : CoroutineScope {
 
     internal companion object {
-        private val lock = Mutex()
-
-        private val dispatcher = Executors.newSingleThreadExecutor().asCoroutineDispatcher()
+        // Only waits on inflations and the lock, so a single thread is shared by every bridge.
+        private val dispatcher =
+                newBackgroundExecutor("BentoInflationBridge", 1, LinkedBlockingQueue())
+                        .asCoroutineDispatcher()
     }
 
+    private val inflationScheduler = BentoSettings.inflationScheduler
+
     private val job = SupervisorJob()
     override val coroutineContext: CoroutineContext = job
 
@@ -64,14 +65,28 @@ internal class AsyncInflationBridge @JvmOverloads constructor(
     private val viewMap = ConcurrentHashMap<ComponentViewHolder<*, *>, View?>()
     private val inflationJobs = ConcurrentHashMap<Component, Job>()
 
+    // Keeps the components of this bridge in the order they were added. Every bridge has its own,
+    // so inflating for one RecyclerView never holds up adding components to another.
+    private val lock = Mutex()
+
+    // How long adding components waited for the lock, in total and at most.
+    private val lockWaitNanos = AtomicLong(0)
+    private val maxLockWaitNanos = AtomicLong(0)
+
+    // Components of batches that are still being inflated.
+    private val batchedComponents = ConcurrentHashMap.newKeySet<Component>()
+
     // Keeps track of whether or not we inflated the below the fold set of views yet.
     private var belowTheFoldTriggered = false
 
     // Keeps track of whether or not we inflated the above the fold set of views yet.
     private var aboveTheFoldTriggered = false
 
-    // Tracks how many views have been inflated.
-    private val inflatedViewTracker = AtomicInteger(0)
+    // Limits the views inflated for the "BEST_GUESS" strategy until the screen is torn down.
+    private val inflationBudget = InflationBudget(
+            BentoSettings.asyncInflationMaxViewsPerComponent,
+            BentoSettings.asyncInflationMaxViewsPerScreen
+    )
 
     var asyncCacheKey: String = recyclerView.id.toString()
         set(value) {
@@ -89,18 +104,7 @@ internal class AsyncInflationBridge @JvmOverloads constructor(
     private var smartAsyncCacheEmptyOnStart = !SmartAsyncInflationCache.containsKey(asyncCacheKey)
 
     init {
-        if (recyclerView.isAttachedToWindow) {
-            findAndAttachToLifecycleOwner()
-        } else {
-            recyclerView.addOnAttachStateChangeListener(object : View.OnAttachStateChangeListener {
-                override fun onViewAttachedToWindow(v: View) {
-                    findAndAttachToLifecycleOwner()
-                    recyclerView.removeOnAttachStateChangeListener(this)
-                }
-
-                override fun onViewDetachedFromWindow(v: View) = Unit
-            })
-        }
+        recyclerView.doOnLifecycleDestroy { clearResources() }
     }
 
     /**
@@ -129,8 +133,17 @@ internal class AsyncInflationBridge @JvmOverloads constructor(
      */
     fun trackComponentRemoval(component: Component) {
         inflationJobs.remove(component)?.cancel()
+        batchedComponents.remove(component)
     }
 
+    /** The total time adding components waited for earlier components, in milliseconds. */
+    val lockWaitTimeMs: Long
+        get() = TimeUnit.NANOSECONDS.toMillis(lockWaitNanos.get())
+
+    /** The longest time adding a component waited for earlier components, in milliseconds. */
+    val maxLockWaitTimeMs: Long
+        get() = TimeUnit.NANOSECONDS.toMillis(maxLockWaitNanos.get())
+
     fun cancelAllInflationJobs() {
         clearResources()
     }
@@ -144,15 +157,36 @@ internal class AsyncInflationBridge @JvmOverloads constructor(
             if (smartAsyncCacheEmptyOnStart) {
                 asyncInflateViewsBestGuess(component, addComponentCallback)
             } else {
-                smartAsyncInflateViewsForComponent(addComponentCallback)
+                smartAsyncInflateViewsForComponent {
+                    executeAddComponentCallback(addComponentCallback)
+                }
             }
         } else if (strategy == SMART) {
-            smartAsyncInflateViewsForComponent(addComponentCallback)
+            smartAsyncInflateViewsForComponent { executeAddComponentCallback(addComponentCallback) }
         } else if (strategy == BEST_GUESS) {
             asyncInflateViewsBestGuess(component, addComponentCallback)
         }
     }
 
+    /**
+     * Like [asyncInflateViewsForComponent] for a batch of components, which are added all at once
+     * with a single call to [addComponentsCallback] on the main thread. Components removed before
+     * then are left out of the call.
+     */
+    fun asyncInflateViewsForComponents(
+        components: List<Component>,
+        addComponentsCallback: (List<Component>) -> Unit
+    ) {
+        if (strategy == BEST_GUESS || strategy == DEFAULT && smartAsyncCacheEmptyOnStart) {
+            asyncInflateViewsBestGuess(components, addComponentsCallback)
+        } else {
+            batchedComponents.addAll(components)
+            smartAsyncInflateViewsForComponent {
+                executeAddComponentsCallback(components, addComponentsCallback)
+            }
+        }
+    }
+
     /**
      * The "SMART" strategy for async inflation where adding components blocks on inflating above
      * the fold view holders before inflating below the fold view holders.
@@ -161,7 +195,7 @@ internal class AsyncInflationBridge @JvmOverloads constructor(
         launch(defaultBridgeDispatcher) {
             // The lock will block all addComponent calls that occur until the above the fold
             // view holders are inflated.
-            lock.withLock {
+            withAddOrderLock {
                 // Only inflate above the fold if the cache wasn't empty in create, the below the
                 // fold set hasn't been inflated yet and if there's a match for this page name in
                 // the cache.
@@ -178,7 +212,7 @@ internal class AsyncInflationBridge @JvmOverloads constructor(
                     }
                 }
                 withContext(Dispatchers.Main) {
-                    executeAddComponentCallback(addComponentCallback)
+                    addComponentCallback()
                 }
             }
             // Outside the lock. The second time it's called, it should inflate the below the fold
@@ -195,23 +229,26 @@ internal class AsyncInflationBridge @JvmOverloads constructor(
     private suspend fun asyncInflateViewsIfPossible(isAboveTheFoldCall: Boolean) {
         if (asyncCacheKey.isEmpty()) return // There's no work to do.
 
-        val listToPrepare = SmartAsyncInflationCache[asyncCacheKey] ?: mutableListOf()
-        if (listToPrepare.isEmpty()) return // There's no work to do.
-
-        val aboveFoldKeys = listToPrepare.take(numberOfAboveTheFoldViewHolders)
-        val numberBelowFoldViewHolders = listToPrepare.size - numberOfAboveTheFoldViewHolders
+        val demand = SmartAsyncInflationCache.getDemand(asyncCacheKey) ?: return
+        val numberBelowFoldViewHolders = demand.totalCount - numberOfAboveTheFoldViewHolders
 
         if (numberBelowFoldViewHolders < 0) {
             return // There's no work to do.
         }
-        val viewHoldersToInflate = if (isAboveTheFoldCall) aboveFoldKeys else listToPrepare.takeLast(numberBelowFoldViewHolders)
+        val viewHoldersToInflate = if (isAboveTheFoldCall) {
+            demand.slice(0, numberOfAboveTheFoldViewHolders)
+        } else {
+            demand.slice(numberOfAboveTheFoldViewHolders, demand.totalCount)
+        }
 
+        val priority = if (isAboveTheFoldCall) ABOVE_THE_FOLD else SPECULATIVE
         coroutineScope {
             val inflations = viewHoldersToInflate.map { viewHolderType ->
                 async {
-                    val viewHolder = constructViewHolder(viewHolderType as Class<out ComponentViewHolder<Any?, Any?>>?)
+                    val viewHolder = constructCachedViewHolder(viewHolderType) ?: return@async
                     addViewHolder(viewHolder, viewHolderType as Class<out ComponentViewHolder<*, *>>)
-                    val (_, view) = BentoAsyncLayoutInflater.inflate(viewHolder, recyclerView, asyncInflaterDispatcher)
+                    val (_, view) = BentoAsyncLayoutInflater.inflate(
+                            viewHolder, recyclerView, inflaterDispatcher(priority))
                     viewMap[viewHolder] = view
                 }
             }
@@ -220,52 +257,106 @@ internal class AsyncInflationBridge @JvmOverloads constructor(
     }
 
     /**
-     * The "BEST_GUESS" strategy for async view inflation. Inflates views for [component] if
-     * its count is non-zero and if doing so doesn't inflate more
-     * than [MAX_VIEWS].
+     * Instantiates a view holder type from the [SmartAsyncInflationCache], or returns null if it
+     * can't be instantiated, such as when a class of another build got the name of the type.
+     */
+    @Suppress("UNCHECKED_CAST")
+    private fun constructCachedViewHolder(viewHolderType: Class<*>): ComponentViewHolder<*, *>? {
+        return try {
+            constructViewHolder(viewHolderType as Class<out ComponentViewHolder<Any?, Any?>>?)
+        } catch (exception: RuntimeException) {
+            if (BentoSettings.loggingEnabled) {
+                Log.w(BentoSettings.BENTO_TAG, "Failed to instantiate $viewHolderType", exception)
+            }
+            null
+        }
+    }
+
+    /**
+     * The "BEST_GUESS" strategy for async view inflation. Inflates the views for [component] the
+     * [inflationBudget] allows.
      */
     private fun asyncInflateViewsBestGuess(component: Component, addComponentCallback: () -> Unit) {
         inflationJobs[component] = launch(defaultBridgeDispatcher) {
-            var numberOfViewsToInflate = component.count
-            // If there's more than 10, chances are they'll be recycled and more will go unused.
-            // Not gonna lie. It's a guess and could be improved.
-            numberOfViewsToInflate.coerceAtMost(VIEWS_PER_COMPONENT_THRESHOLD)
-
-            // If this amount would tip us over the MAX views value, only inflate enough
-            // to fill up to the max.
-            numberOfViewsToInflate = numberOfViewsToInflate
-                    .coerceAtMost(MAX_VIEWS - inflatedViewTracker.get())
-
-            // Skip the below coroutine if there are either 0 views to inflate.
-            if (numberOfViewsToInflate == 0) {
-                lock.withLock {
-                    // We still need the lock to make sure components are added in order. Otherwise,
-                    // these ones would add above previous components that are being inflated below.
-                }
-                withContext(Dispatchers.Main) {
-                    executeAddComponentCallback(addComponentCallback)
-                }
+            val inflations = inflateViewsBestGuess(component)
+            withAddOrderLock {
+                // We still need the lock when there's nothing to inflate to make sure components
+                // are added in order. Otherwise, these ones would add above previous components
+                // that are being inflated below.
+                inflations.awaitAll()
+            }
+            withContext(Dispatchers.Main) {
+                executeAddComponentCallback(addComponentCallback)
+            }
+        }
+    }
+
+    /**
+     * The "BEST_GUESS" strategy for a batch of components. The views of all the components are
+     * inflated concurrently, and the components still pending are then added with a single call
+     * to [addComponentsCallback].
+     */
+    private fun asyncInflateViewsBestGuess(
+        components: List<Component>,
+        addComponentsCallback: (List<Component>) -> Unit
+    ) {
+        batchedComponents.addAll(components)
+        launch(defaultBridgeDispatcher) {
+            val inflations = components.flatMap { inflateViewsBestGuess(it) }
+            withAddOrderLock {
+                inflations.awaitAll()
+            }
+            withContext(Dispatchers.Main) {
+                executeAddComponentsCallback(components, addComponentsCallback)
+            }
+        }
+    }
+
+    /** Starts inflating the views for [component] the [inflationBudget] allows. */
+    private fun CoroutineScope.inflateViewsBestGuess(component: Component): List<Deferred<Unit>> {
+        val inflatedBefore = inflationBudget.usedCount
+        return inflationBudget.allocate(component).mapIndexed { i, viewHolderType ->
+            // The first views of the screen are shown as soon as it's displayed.
+            val priority = if (inflatedBefore + i < numberOfAboveTheFoldViewHolders) {
+                ABOVE_THE_FOLD
             } else {
-                inflatedViewTracker.getAndAdd(numberOfViewsToInflate)
-                val inflations = (0 until numberOfViewsToInflate).map { i ->
-                    async {
-                        val viewHolderType = component.getHolderType(i)
-                        val viewHolder: ComponentViewHolder<*, *> = constructViewHolder(viewHolderType)
-                        addViewHolder(viewHolder, viewHolderType)
-                        val (_, view) = BentoAsyncLayoutInflater.inflate(viewHolder, recyclerView, asyncInflaterDispatcher)
-                        viewMap[viewHolder] = view
-                    }
-                }
-                lock.withLock {
-                    inflations.awaitAll()
-                }
-                withContext(Dispatchers.Main) {
-                    executeAddComponentCallback(addComponentCallback)
-                }
+                VISIBLE_NEXT
+            }
+            async {
+                val viewHolder: ComponentViewHolder<*, *> = constructViewHolder(viewHolderType)
+                addViewHolder(viewHolder, viewHolderType)
+                val (_, view) = BentoAsyncLayoutInflater.inflate(
+                        viewHolder, recyclerView, inflaterDispatcher(priority))
+                viewMap[viewHolder] = view
             }
         }
     }
 
+    /**
+     * Runs [action] holding the lock that keeps components in order, and records how long it took
+     * to get the lock.
+     */
+    private suspend inline fun <T> withAddOrderLock(action: () -> T): T {
+        val start = System.nanoTime()
+        lock.lock()
+        val waitNanos = System.nanoTime() - start
+        lockWaitNanos.addAndGet(waitNanos)
+        maxLockWaitNanos.accumulateAndGet(waitNanos, ::maxOf)
+        val waitMs = TimeUnit.NANOSECONDS.toMillis(waitNanos)
+        if (BentoSettings.loggingEnabled && waitMs > 0) {
+            Log.i(BentoSettings.BENTO_TAG, "Waited $waitMs ms to add components to $asyncCacheKey")
+        }
+        try {
+            return action()
+        } finally {
+            lock.unlock()
+        }
+    }
+
+    private fun inflaterDispatcher(priority: InflationPriority): CoroutineDispatcher {
+        return asyncInflaterDispatcher ?: inflationScheduler.dispatcher(priority)
+    }
+
     private fun addViewHolder(
         viewHolder: ComponentViewHolder<*, *>,
         viewHolderType: Class<out ComponentViewHolder<*, *>>
@@ -294,22 +385,19 @@ internal class AsyncInflationBridge @JvmOverloads constructor(
         }
     }
 
-    private fun findAndAttachToLifecycleOwner() {
-        var owner = recyclerView.findViewTreeLifecycleOwner()
-        if (owner == null) {
-            if (recyclerView.context is LifecycleOwner) {
-                owner = recyclerView.context as LifecycleOwner
-            }
-        }
-        owner?.lifecycleScope?.launch(Dispatchers.Main.immediate) {
-            owner.lifecycle.addObserver(object : LifecycleObserver {
-
-                @OnLifecycleEvent(Lifecycle.Event.ON_DESTROY)
-                fun cleanUp() {
-                    clearResources()
-                    owner.lifecycle.removeObserver(this)
-                }
-            })
+    /**
+     * Executes the callback adding a batch of components on the main thread, leaving out the
+     * components removed while the batch was inflating. Unlike a single component, an error is
+     * never swallowed, as it would drop the rest of the batch. The callback leaves out components
+     * that were already added.
+     */
+    private fun executeAddComponentsCallback(
+        components: List<Component>,
+        addComponentsCallback: (List<Component>) -> Unit
+    ) {
+        val pendingComponents = components.filter { batchedComponents.remove(it) }
+        if (pendingComponents.isNotEmpty()) {
+            addComponentsCallback(pendingComponents)
         }
     }
 
@@ -320,5 +408,7 @@ internal class AsyncInflationBridge @JvmOverloads constructor(
         viewHolderMap.clear()
         viewMap.clear()
         inflationJobs.clear()
+        batchedComponents.clear()
+        inflationBudget.reset()
     }
 }
@@ -4,25 +4,23 @@ import android.util.Log
 import android.view.View
 import android.view.ViewGroup
 import com.yelp.android.bento.utils.BentoSettings
-import java.util.concurrent.Executors
 import kotlinx.coroutines.CoroutineDispatcher
 import kotlinx.coroutines.Dispatchers
-import kotlinx.coroutines.asCoroutineDispatcher
 import kotlinx.coroutines.withContext
 
 private const val TAG = "BentoAsyncInflater"
 
 /**
- * Inflates a componentViewHolder's views on one of ten lucky background threads.
+ * Inflates a componentViewHolder's views on a background thread of the
+ * [BentoSettings.inflationScheduler].
  */
 internal object BentoAsyncLayoutInflater {
 
-    internal val dispatcher = Executors.newFixedThreadPool(10).asCoroutineDispatcher()
-
     suspend fun inflate(
         viewHolder: ComponentViewHolder<*, *>,
         parent: ViewGroup,
-        inflaterDispatcher: CoroutineDispatcher = dispatcher
+        inflaterDispatcher: CoroutineDispatcher =
+                BentoSettings.inflationScheduler.dispatcher(InflationPriority.VISIBLE_NEXT)
     ): Pair<ComponentViewHolder<*, *>, View> =
             withContext(inflaterDispatcher) {
                 val view = try {
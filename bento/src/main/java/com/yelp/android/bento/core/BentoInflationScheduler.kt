@@ -0,0 +1,130 @@
+package com.yelp.android.bento.core
+
+import android.os.Process
+import java.util.concurrent.BlockingQueue
+import java.util.concurrent.PriorityBlockingQueue
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.coroutines.CoroutineContext
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.cancel
+
+// Inflating is mostly waiting on the main thread's looper and resources beyond a few threads.
+private const val MAX_THREADS = 4
+
+// Idle threads are stopped after this long, so an idle app keeps none.
+private const val KEEP_ALIVE_SECONDS = 30L
+
+/** How soon inflated views are needed, from the soonest to the latest. */
+enum class InflationPriority {
+
+    /** Views shown as soon as the screen is displayed. */
+    ABOVE_THE_FOLD,
+
+    /** Views of the components being added, which are likely shown next. */
+    VISIBLE_NEXT,
+
+    /** Views inflated ahead of time in case they're needed, such as below the fold. */
+    SPECULATIVE
+}
+
+/**
+ * Runs the background inflations of every controller on a bounded set of background priority
+ * threads. Queued inflations run in the order of their [InflationPriority], and in the order they
+ * were queued for the same priority, so views needed above the fold never wait behind speculative
+ * ones. A cancelled inflation is skipped as soon as it's dequeued.
+ *
+ * The scheduler Bento uses is set in
+ * [com.yelp.android.bento.utils.BentoSettings.inflationScheduler].
+ *
+ * @param threadCount The maximum number of inflations running at once. Defaults to one less than
+ * the number of cores, leaving one for the main thread, up to [MAX_THREADS].
+ */
+class BentoInflationScheduler @JvmOverloads constructor(
+    threadCount: Int = defaultThreadCount()
+) {
+
+    private val sequence = AtomicLong(0)
+
+    private val executor = newBackgroundExecutor(
+            "BentoInflater", threadCount, PriorityBlockingQueue<Runnable>())
+
+    private val dispatchers = InflationPriority.values().map { PriorityDispatcher(it) }
+
+    /** @return The dispatcher running inflations with the provided priority. */
+    fun dispatcher(priority: InflationPriority): CoroutineDispatcher = dispatchers[priority.ordinal]
+
+    /**
+     * Stops the threads once the queued inflations are done. Inflations dispatched afterwards are
+     * cancelled.
+     */
+    fun shutdown() {
+        executor.shutdown()
+    }
+
+    private inner class PriorityDispatcher(
+        private val priority: InflationPriority
+    ) : CoroutineDispatcher() {
+
+        override fun dispatch(context: CoroutineContext, block: Runnable) {
+            try {
+                executor.execute(PrioritizedTask(priority, sequence.getAndIncrement(), block))
+            } catch (exception: RejectedExecutionException) {
+                // Like closed executor dispatchers, cancel and let the coroutine finish elsewhere.
+                context.cancel()
+                Dispatchers.IO.dispatch(context, block)
+            }
+        }
+
+        override fun toString() = "BentoInflationScheduler.$priority"
+    }
+
+    private class PrioritizedTask(
+        private val priority: InflationPriority,
+        private val sequence: Long,
+        private val block: Runnable
+    ) : Runnable by block, Comparable<PrioritizedTask> {
+
+        override fun compareTo(other: PrioritizedTask): Int {
+            return compareValuesBy(this, other, { it.priority }, { it.sequence })
+        }
+    }
+
+    private companion object {
+
+        fun defaultThreadCount(): Int {
+            return (Runtime.getRuntime().availableProcessors() - 1).coerceIn(1, MAX_THREADS)
+        }
+    }
+}
+
+/**
+ * @return An executor running up to [threadCount] tasks at once on background priority threads,
+ * which are stopped while idle.
+ */
+internal fun newBackgroundExecutor(
+    name: String,
+    threadCount: Int,
+    queue: BlockingQueue<Runnable>
+): ThreadPoolExecutor {
+    val threadNumber = AtomicInteger(0)
+    val threadFactory = ThreadFactory { runnable ->
+        Thread({
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND)
+            runnable.run()
+        }, "$name-${threadNumber.incrementAndGet()}")
+    }
+    return ThreadPoolExecutor(
+            threadCount,
+            threadCount,
+            KEEP_ALIVE_SECONDS,
+            TimeUnit.SECONDS,
+            queue,
+            threadFactory
+    ).apply { allowCoreThreadTimeOut(true) }
+}
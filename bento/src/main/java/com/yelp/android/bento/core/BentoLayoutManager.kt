@@ -3,6 +3,9 @@ package com.yelp.android.bento.core
 import android.content.Context
 import androidx.recyclerview.widget.GridLayoutManager
 import androidx.recyclerview.widget.RecyclerView
+import kotlin.math.abs
+import kotlin.math.max
+import kotlin.math.min
 
 class BentoLayoutManager(
     context: Context,
@@ -11,27 +14,201 @@ class BentoLayoutManager(
 ) : GridLayoutManager(context, componentGroup.numberLanes, orientation, false) {
     var isScrollEnabled: Boolean = true
 
+    private val spanTable = SpanTable(componentGroup)
+
     init {
-        spanSizeLookup = object : SpanSizeLookup() {
-            override fun getSpanSize(position: Int): Int {
+        spanSizeLookup = spanTable
+    }
+
+    override fun onAttachedToWindow(view: RecyclerView) {
+        super.onAttachedToWindow(view)
+        spanTable.startObserving()
+    }
+
+    override fun onDetachedFromWindow(view: RecyclerView, recycler: RecyclerView.Recycler) {
+        super.onDetachedFromWindow(view, recycler)
+        // The group may outlive this layout manager, so it mustn't keep a reference to it.
+        spanTable.stopObserving()
+    }
+
+    override fun canScrollHorizontally(): Boolean {
+        return isScrollEnabled && super.canScrollHorizontally()
+    }
+
+    override fun canScrollVertically(): Boolean {
+        return isScrollEnabled && super.canScrollVertically()
+    }
+
+    /**
+     * Caches the span size, span index and span group index of every position, since
+     * GridLayoutManager asks for them many times per layout pass. The component group's
+     * notifications tell which positions changed, so only those are forgotten. Span indices depend
+     * on every position before them, so they are only kept up to the first changed position.
+     *
+     * The group's notifications are only observed while the RecyclerView is attached to a window.
+     * In the meantime nothing is cached, and the tables are rebuilt once it's attached again.
+     */
+    private inner class SpanTable(
+        private val componentGroup: ComponentGroup
+    ) : SpanSizeLookup(), Component.ComponentDataObserver {
+
+        // A span size of 0 means it isn't known yet.
+        private var spanSizes = IntArray(0)
+        private var spanIndices = IntArray(0)
+        private var spanGroupIndices = IntArray(0)
+
+        // The number of positions the tables describe.
+        private var size = 0
+
+        // The span indices of positions below this are known.
+        private var validIndices = 0
+
+        // The span count the tables were filled for.
+        private var tableSpanCount = 0
+
+        // Whether the group's notifications are observed, which the tables rely on.
+        private var observing = false
+
+        fun startObserving() {
+            if (!observing) {
+                observing = true
+                onChanged() // Changes may have been missed.
+                componentGroup.registerComponentDataObserver(this)
+            }
+        }
+
+        fun stopObserving() {
+            if (observing) {
+                observing = false
+                componentGroup.unregisterComponentDataObserver(this)
+            }
+        }
+
+        override fun getSpanSize(position: Int): Int {
+            if (!observing) {
+                return componentGroup.getGridSpanSize(position, spanCount)
+            }
+            checkSpanCount(spanCount)
+            if (position >= size) {
+                resize(position + 1)
+            }
+            var spanSize = spanSizes[position]
+            if (spanSize == 0) {
                 // First get the span of the cell based on its position in the component
                 // Then calculate the column width factor based on the number of columns in
                 // the RecyclerView. In the 2 and 3 column example, there are 6 total
                 // columns.
                 // The span of a 2 column cell would be 1, but we need to multiply by 6/2=3
                 // to get the true span across the recycler view.
-                return componentGroup.spanSizeLookup.getSpanSize(position) *
-                        (spanCount / componentGroup
-                                .findComponentWithIndex(position).numberLanes)
+                spanSize = componentGroup.getGridSpanSize(position, spanCount)
+                spanSizes[position] = spanSize
             }
+            return spanSize
         }
-    }
 
-    override fun canScrollHorizontally(): Boolean {
-        return isScrollEnabled && super.canScrollHorizontally()
-    }
+        override fun getSpanIndex(position: Int, spanCount: Int): Int {
+            if (!observing) {
+                return super.getSpanIndex(position, spanCount)
+            }
+            fillIndices(position, spanCount)
+            return spanIndices[position]
+        }
 
-    override fun canScrollVertically(): Boolean {
-        return isScrollEnabled && super.canScrollVertically()
+        override fun getSpanGroupIndex(adapterPosition: Int, spanCount: Int): Int {
+            if (!observing) {
+                return super.getSpanGroupIndex(adapterPosition, spanCount)
+            }
+            fillIndices(adapterPosition, spanCount)
+            return spanGroupIndices[adapterPosition]
+        }
+
+        /**
+         * Lays out the positions up to the provided one the same way GridLayoutManager does: an
+         * item goes right after the previous one, or starts a new row if it doesn't fit.
+         */
+        private fun fillIndices(position: Int, spanCount: Int) {
+            checkSpanCount(spanCount)
+            for (i in validIndices..position) {
+                val spanSize = getSpanSize(i)
+                if (i == 0) {
+                    spanIndices[i] = 0
+                    spanGroupIndices[i] = 0
+                } else {
+                    val next = spanIndices[i - 1] + getSpanSize(i - 1)
+                    spanIndices[i] = if (next + spanSize <= spanCount) next else 0
+                    spanGroupIndices[i] =
+                            spanGroupIndices[i - 1] + if (spanIndices[i] == 0) 1 else 0
+                }
+            }
+            validIndices = max(validIndices, position + 1)
+        }
+
+        private fun checkSpanCount(spanCount: Int) {
+            if (spanCount != tableSpanCount) {
+                tableSpanCount = spanCount
+                size = 0
+                validIndices = 0
+            }
+        }
+
+        /** Grows or shrinks the tables, with the new positions unknown. */
+        private fun resize(newSize: Int) {
+            if (newSize > spanSizes.size) {
+                val capacity = max(newSize, spanSizes.size * 2)
+                spanSizes = spanSizes.copyOf(capacity)
+                spanIndices = spanIndices.copyOf(capacity)
+                spanGroupIndices = spanGroupIndices.copyOf(capacity)
+            }
+            if (newSize > size) {
+                spanSizes.fill(0, size, newSize)
+            }
+            size = newSize
+            validIndices = min(validIndices, size)
+        }
+
+        private fun forgetIndicesFrom(position: Int) {
+            validIndices = min(validIndices, position)
+        }
+
+        override fun onChanged() {
+            size = 0
+            validIndices = 0
+        }
+
+        override fun onItemRangeChanged(positionStart: Int, itemCount: Int) {
+            if (positionStart < size) {
+                spanSizes.fill(0, positionStart, min(positionStart + itemCount, size))
+            }
+            forgetIndicesFrom(positionStart)
+        }
+
+        override fun onItemRangeInserted(positionStart: Int, itemCount: Int) {
+            if (positionStart < size) {
+                val oldSize = size
+                resize(size + itemCount)
+                System.arraycopy(
+                        spanSizes,
+                        positionStart,
+                        spanSizes,
+                        positionStart + itemCount,
+                        oldSize - positionStart)
+                spanSizes.fill(0, positionStart, positionStart + itemCount)
+            }
+            forgetIndicesFrom(positionStart)
+        }
+
+        override fun onItemRangeRemoved(positionStart: Int, itemCount: Int) {
+            if (positionStart < size) {
+                val end = min(positionStart + itemCount, size)
+                System.arraycopy(spanSizes, end, spanSizes, positionStart, size - end)
+                resize(size - (end - positionStart))
+            }
+            forgetIndicesFrom(positionStart)
+        }
+
+        override fun onItemMoved(fromPosition: Int, toPosition: Int) {
+            // The items in between shift by one, so their span sizes are forgotten as well.
+            onItemRangeChanged(min(fromPosition, toPosition), abs(fromPosition - toPosition) + 1)
+        }
     }
 }
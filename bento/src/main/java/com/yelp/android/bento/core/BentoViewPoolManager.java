@@ -0,0 +1,176 @@
+package com.yelp.android.bento.core;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.os.Bundle;
+import android.util.SparseIntArray;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hands out {@link RecyclerView.RecycledViewPool}s shared by every controller that opts in, so
+ * view holders outlive the screen, nested list or pager page that created them instead of each
+ * controller starting with an empty pool. View types are the same in every controller, see {@link
+ * ViewTypeRegistry}, so any controller can reuse any pooled view holder.
+ *
+ * <p>Views can only be reused where they were inflated for, so controllers share a pool when their
+ * RecyclerViews belong to the same activity and use the same theme. The pools of an activity are
+ * dropped when it's destroyed, and every pool is emptied when the system runs low on memory.
+ *
+ * <p>A manager is usually created once for the whole app and set in {@link
+ * com.yelp.android.bento.utils.BentoSettings#setViewPoolManager(BentoViewPoolManager)}.
+ */
+@MainThread
+public final class BentoViewPoolManager implements ComponentCallbacks2 {
+
+    /** The number of recycled views RecyclerView keeps per view type by default. */
+    private static final int DEFAULT_MAX_RECYCLED_VIEWS = 5;
+
+    private final Map<Activity, Map<Resources.Theme, SharedPool>> mPools = new HashMap<>();
+
+    /** The capacity limits by view type. */
+    private final SparseIntArray mCapacities = new SparseIntArray();
+
+    public BentoViewPoolManager(@NonNull Application application) {
+        application.registerComponentCallbacks(this);
+        application.registerActivityLifecycleCallbacks(new ActivityDestroyedCallbacks());
+    }
+
+    /**
+     * @return The pool shared by the RecyclerViews using the provided context, or null if the
+     *     context doesn't belong to a live activity, in which case the views can't be shared.
+     */
+    @Nullable
+    public RecyclerView.RecycledViewPool getPool(@NonNull Context context) {
+        Activity activity = findActivity(context);
+        if (activity == null || activity.isDestroyed()) {
+            return null;
+        }
+        Map<Resources.Theme, SharedPool> pools = mPools.get(activity);
+        if (pools == null) {
+            pools = new HashMap<>();
+            mPools.put(activity, pools);
+        }
+        SharedPool pool = pools.get(context.getTheme());
+        if (pool == null) {
+            pool = new SharedPool();
+            pools.put(context.getTheme(), pool);
+        }
+        return pool;
+    }
+
+    /**
+     * Limits the number of recycled views of the provided holder type every pool keeps, whatever
+     * the controllers using the pool ask for.
+     */
+    public void setCapacity(
+            @NonNull Class<? extends ComponentViewHolder> holderType, int capacity) {
+        int viewType = ViewTypeRegistry.getViewType(holderType);
+        mCapacities.put(viewType, capacity);
+        for (Map<Resources.Theme, SharedPool> pools : mPools.values()) {
+            for (SharedPool pool : pools.values()) {
+                pool.applyCapacity(viewType);
+            }
+        }
+    }
+
+    /** Empties every pool. The pools keep being shared and fill up again as views are recycled. */
+    public void trim() {
+        for (Map<Resources.Theme, SharedPool> pools : mPools.values()) {
+            for (SharedPool pool : pools.values()) {
+                pool.clear();
+            }
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            trim();
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        trim();
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+        // Views inflated for the old configuration are dropped along with their activity.
+    }
+
+    @Nullable
+    private static Activity findActivity(@NonNull Context context) {
+        while (context instanceof ContextWrapper) {
+            if (context instanceof Activity) {
+                return (Activity) context;
+            }
+            context = ((ContextWrapper) context).getBaseContext();
+        }
+        return null;
+    }
+
+    /** A pool that caps the limits controllers set with the capacities of the manager. */
+    private final class SharedPool extends RecyclerView.RecycledViewPool {
+
+        /** The limits the controllers asked for, by view type. */
+        private final SparseIntArray mRequestedMax = new SparseIntArray();
+
+        @Override
+        public void setMaxRecycledViews(int viewType, int max) {
+            mRequestedMax.put(viewType, max);
+            applyCapacity(viewType);
+        }
+
+        private void applyCapacity(int viewType) {
+            int max = mRequestedMax.get(viewType, DEFAULT_MAX_RECYCLED_VIEWS);
+            int capacity = mCapacities.get(viewType, Integer.MAX_VALUE);
+            super.setMaxRecycledViews(viewType, Math.min(max, capacity));
+        }
+    }
+
+    private final class ActivityDestroyedCallbacks
+            implements Application.ActivityLifecycleCallbacks {
+
+        @Override
+        public void onActivityDestroyed(@NonNull Activity activity) {
+            Map<Resources.Theme, SharedPool> pools = mPools.remove(activity);
+            if (pools != null) {
+                for (SharedPool pool : pools.values()) {
+                    pool.clear();
+                }
+            }
+        }
+
+        @Override
+        public void onActivityCreated(@NonNull Activity activity, @Nullable Bundle state) {}
+
+        @Override
+        public void onActivityStarted(@NonNull Activity activity) {}
+
+        @Override
+        public void onActivityResumed(@NonNull Activity activity) {}
+
+        @Override
+        public void onActivityPaused(@NonNull Activity activity) {}
+
+        @Override
+        public void onActivityStopped(@NonNull Activity activity) {}
+
+        @Override
+        public void onActivitySaveInstanceState(
+                @NonNull Activity activity, @NonNull Bundle outState) {}
+    }
+}
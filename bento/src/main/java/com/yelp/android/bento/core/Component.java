@@ -8,6 +8,7 @@ import androidx.recyclerview.widget.GridLayoutManager.SpanSizeLookup;
 import com.yelp.android.bento.utils.Observable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @deprecated Bento is deprecated!
@@ -26,13 +27,33 @@ import java.util.List;
 @Deprecated
 public abstract class Component {
 
+    /** Returned by {@link #getItemId(int)} for components without stable item IDs. */
+    public static final long NO_ID = -1;
+
+    /**
+     * Returned by {@link #getRecyclePoolHint(Class)} to leave the number of recycled views kept for
+     * a holder type to the view.
+     */
+    public static final int NO_POOL_HINT = -1;
+
+    private static final AtomicInteger sNextIdNamespace = new AtomicInteger();
+
     private final ComponentDataObservable mObservable = new ComponentDataObservable();
 
+    /** Keeps the item IDs of this component apart from those of every other component. */
+    private final int mIdNamespace = sNextIdNamespace.getAndIncrement();
+
     @Px private int mStartGapSize = 0;
 
     @Px private int mEndGapSize = 0;
     @NonNull private List<ItemVisibilityListener> mItemVisibilityListeners = new ArrayList<>();
 
+    /**
+     * The changes held back since {@link #deferNotifications()}, or null if observers are notified
+     * right away.
+     */
+    @Nullable private ComponentDataChangeBuffer mDeferredChanges;
+
     /**
      * Gets the object that is the brains of the internal item at the specified position. The
      * presenter will be passed in to the bind method in the {@link ComponentViewHolder#bind(Object,
@@ -82,6 +103,47 @@ public abstract class Component {
     @NonNull
     public abstract Class<? extends ComponentViewHolder> getHolderType(int position);
 
+    /**
+     * Override this to tell the controller how many views of a holder type should be kept for
+     * recycling. RecyclerView keeps 5 views per holder type by default, so holder types that are
+     * expensive to inflate and fill the screen many times over, such as the items of a feed, are
+     * otherwise evicted and inflated again during fast scrolls. The hint is applied the first time
+     * the controller sees the holder type.
+     *
+     * @param holderType One of the holder types returned by {@link #getHolderType(int)}.
+     * @return The number of recycled views to keep, or {@link #NO_POOL_HINT} for the default.
+     */
+    public int getRecyclePoolHint(@NonNull Class<? extends ComponentViewHolder> holderType) {
+        return NO_POOL_HINT;
+    }
+
+    /**
+     * Override this along with {@link #getItemId(int)} to give the items of this component stable
+     * IDs, which lets the view reuse views across changes to the whole data set and animate moved
+     * items. A {@link com.yelp.android.bento.componentcontrollers.RecyclerViewComponentController}
+     * created with stable IDs only accepts components with them. The value must not change over the
+     * lifetime of the component.
+     *
+     * @return True if {@link #getItemId(int)} returns stable IDs.
+     */
+    public boolean hasStableIds() {
+        return false;
+    }
+
+    /**
+     * Gets the stable ID of the item at the specified position. The ID must identify the same data
+     * item for as long as it's in the component, wherever it moves, and be unique within the
+     * component. IDs only need to be unique within the component, as Bento combines them with a
+     * namespace of the component.
+     *
+     * @param position The position of the internal item in the component.
+     * @return The stable ID of the item, or {@link #NO_ID} if this component doesn't have stable
+     *     IDs.
+     */
+    public long getItemId(int position) {
+        return NO_ID;
+    }
+
     protected SpanSizeLookup mSpanSizeLookup =
             new SpanSizeLookup() {
                 @Override
@@ -95,29 +157,108 @@ public abstract class Component {
 
     /** Notify observers that the {@link Component} data has changed. */
     public final void notifyDataChanged() {
-        mObservable.notifyChanged();
+        if (mDeferredChanges != null) {
+            mDeferredChanges.onChanged();
+        } else {
+            mObservable.notifyChanged();
+        }
     }
 
     /**
      * Notify observers that a number of internal items in the {@link Component} data has changed.
      */
     public final void notifyItemRangeChanged(int positionStart, int itemCount) {
-        mObservable.notifyItemRangeChanged(positionStart, itemCount);
+        notifyItemRangeChanged(positionStart, itemCount, null);
+    }
+
+    /**
+     * Notify observers that a number of internal items in the {@link Component} data has changed,
+     * with a payload describing the change. The payload reaches {@link
+     * ComponentViewHolder#bind(Object, Object, List)}, so view holders can update only the views
+     * affected instead of binding the whole item again.
+     *
+     * @param payload Describes the change, or null for a full rebind.
+     */
+    public final void notifyItemRangeChanged(
+            int positionStart, int itemCount, @Nullable Object payload) {
+        if (mDeferredChanges != null) {
+            mDeferredChanges.onItemRangeChanged(positionStart, itemCount, payload);
+        } else {
+            mObservable.notifyItemRangeChanged(positionStart, itemCount, payload);
+        }
     }
 
     /** Notify observers that an internal item in the {@link Component} data has been inserted. */
     public final void notifyItemRangeInserted(int positionStart, int itemCount) {
-        mObservable.notifyItemRangeInserted(positionStart, itemCount);
+        if (mDeferredChanges != null) {
+            mDeferredChanges.onItemRangeInserted(positionStart, itemCount);
+        } else {
+            mObservable.notifyItemRangeInserted(positionStart, itemCount);
+        }
     }
 
     /** Notify observers that an internal item in the {@link Component} data has been removed. */
     public final void notifyItemRangeRemoved(int positionStart, int itemCount) {
-        mObservable.notifyItemRangeRemoved(positionStart, itemCount);
+        if (mDeferredChanges != null) {
+            mDeferredChanges.onItemRangeRemoved(positionStart, itemCount);
+        } else {
+            mObservable.notifyItemRangeRemoved(positionStart, itemCount);
+        }
     }
 
     /** Notify observers that an internal item in the {@link Component} data has been moved. */
     public final void notifyItemMoved(int fromPosition, int toPosition) {
-        mObservable.notifyOnItemMoved(fromPosition, toPosition);
+        if (mDeferredChanges != null) {
+            mDeferredChanges.onItemMoved(fromPosition, toPosition);
+        } else {
+            mObservable.notifyOnItemMoved(fromPosition, toPosition);
+        }
+    }
+
+    /**
+     * Runs the provided changes to this component, holding back the notifications they send in
+     * the meantime and merging adjacent or overlapping ones. Observers and ancestor groups are
+     * notified of the merged changes before this method returns. A burst of changes, such as
+     * appending data and then toggling a footer, then reaches them as a single minimal set of
+     * notifications rather than one relayout per change.
+     *
+     * <p>Notifications are never held back past this call, so observers such as the RecyclerView
+     * adapter always hear about the changes in the same main thread message the data changed in.
+     * Calls may be nested, in which case only the outermost one notifies observers. Must be used
+     * on the main thread.
+     *
+     * @param changes Changes this component and calls its notify methods.
+     */
+    public void coalesceNotifications(@NonNull Runnable changes) {
+        if (mDeferredChanges != null) {
+            changes.run(); // The outer call notifies observers.
+            return;
+        }
+        deferNotifications();
+        try {
+            changes.run();
+        } finally {
+            dispatchDeferredNotifications();
+        }
+    }
+
+    /**
+     * Holds back notifications to this component's observers until {@link
+     * #dispatchDeferredNotifications()} is called, merging the changes in the meantime.
+     */
+    final void deferNotifications() {
+        if (mDeferredChanges == null) {
+            mDeferredChanges = new ComponentDataChangeBuffer();
+        }
+    }
+
+    /** Notifies observers of the changes held back since {@link #deferNotifications()}. */
+    final void dispatchDeferredNotifications() {
+        ComponentDataChangeBuffer changes = mDeferredChanges;
+        mDeferredChanges = null;
+        if (changes != null) {
+            changes.dispatchTo(this);
+        }
     }
 
     /**
@@ -288,6 +429,41 @@ public abstract class Component {
         return getItem(position - getPositionOffset());
     }
 
+    /**
+     * Similar to {@link #getItemId(int)} but also accounts for Bento framework items such as gaps,
+     * and combines the ID with this component's namespace so it's unique among all components.
+     *
+     * @param position The position to retrieve the item ID at.
+     * @return The stable ID of the internal item, or {@link #NO_ID} if the component doesn't have
+     *     stable IDs.
+     */
+    final long getItemIdInternal(int position) {
+        if (hasGap(position)) {
+            // Gaps get IDs from a namespace of their own, so they can't clash with the items.
+            int side = position == 0 && mStartGapSize != 0 ? 0 : 1;
+            return mixId(((long) mIdNamespace << 1) | 1, side);
+        }
+
+        long itemId = getItemId(position - getPositionOffset());
+        return itemId == NO_ID ? NO_ID : mixId((long) mIdNamespace << 1, itemId);
+    }
+
+    /**
+     * Combines an ID with a namespace. For a given namespace, different IDs always give different
+     * results, and the results for different namespaces are scattered so they practically never
+     * collide.
+     */
+    private static long mixId(long namespace, long id) {
+        return mix64(id + mix64(namespace + 0x9E3779B97F4A7C15L));
+    }
+
+    /** The bijective finalizer of MurmurHash3. */
+    private static long mix64(long value) {
+        value = (value ^ (value >>> 33)) * 0xFF51AFD7ED558CCDL;
+        value = (value ^ (value >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return value ^ (value >>> 33);
+    }
+
     /** @return The span size lookup that manages components with multiple lanes. */
     @NonNull
     public SpanSizeLookup getSpanSizeLookup() {
@@ -353,9 +529,14 @@ public abstract class Component {
             }
         }
 
-        public void notifyItemRangeChanged(int positionStart, int itemCount) {
+        public void notifyItemRangeChanged(
+                int positionStart, int itemCount, @Nullable Object payload) {
             for (int i = mObservers.size() - 1; i >= 0; i--) {
-                mObservers.get(i).onItemRangeChanged(positionStart, itemCount);
+                if (payload == null) {
+                    mObservers.get(i).onItemRangeChanged(positionStart, itemCount);
+                } else {
+                    mObservers.get(i).onItemRangeChanged(positionStart, itemCount, payload);
+                }
             }
         }
 
@@ -389,6 +570,15 @@ public abstract class Component {
 
         void onItemRangeChanged(int positionStart, int itemCount);
 
+        /**
+         * Called instead of {@link #onItemRangeChanged(int, int)} when the change comes with a
+         * payload. Observers that don't use payloads can ignore this.
+         */
+        default void onItemRangeChanged(
+                int positionStart, int itemCount, @NonNull Object payload) {
+            onItemRangeChanged(positionStart, itemCount);
+        }
+
         void onItemRangeInserted(int positionStart, int itemCount);
 
         void onItemRangeRemoved(int positionStart, int itemCount);
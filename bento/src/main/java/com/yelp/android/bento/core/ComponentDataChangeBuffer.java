@@ -0,0 +1,197 @@
+package com.yelp.android.bento.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.yelp.android.bento.core.Component.ComponentDataObserver;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the changes a {@link Component} would have notified its observers of while its
+ * notifications are deferred. Each change is merged into the previous one where possible, so that
+ * a burst of changes is dispatched as the shortest equivalent sequence of notifications. For
+ * example, appending several components to a group becomes a single range insertion.
+ */
+final class ComponentDataChangeBuffer implements ComponentDataObserver {
+
+    private static final int TYPE_CHANGE = 0;
+    private static final int TYPE_INSERT = 1;
+    private static final int TYPE_REMOVE = 2;
+    private static final int TYPE_MOVE = 3;
+
+    /** The recorded changes in the order they happened. */
+    private final List<Change> mChanges = new ArrayList<>();
+
+    /** True if the whole data set changed, which makes any other change redundant. */
+    private boolean mDataSetChanged = false;
+
+    /** @return True if no changes have been recorded. */
+    boolean isEmpty() {
+        return !mDataSetChanged && mChanges.isEmpty();
+    }
+
+    @Override
+    public void onChanged() {
+        mDataSetChanged = true;
+        mChanges.clear();
+    }
+
+    @Override
+    public void onItemRangeChanged(int positionStart, int itemCount) {
+        add(TYPE_CHANGE, positionStart, itemCount, null);
+    }
+
+    @Override
+    public void onItemRangeChanged(int positionStart, int itemCount, @Nullable Object payload) {
+        add(TYPE_CHANGE, positionStart, itemCount, payload);
+    }
+
+    @Override
+    public void onItemRangeInserted(int positionStart, int itemCount) {
+        add(TYPE_INSERT, positionStart, itemCount, null);
+    }
+
+    @Override
+    public void onItemRangeRemoved(int positionStart, int itemCount) {
+        add(TYPE_REMOVE, positionStart, itemCount, null);
+    }
+
+    @Override
+    public void onItemMoved(int fromPosition, int toPosition) {
+        if (mDataSetChanged || fromPosition == toPosition) {
+            return;
+        }
+        Change change = new Change(TYPE_MOVE, fromPosition, 1, null);
+        change.mToPosition = toPosition;
+        mChanges.add(change);
+    }
+
+    /**
+     * Notifies the observers of the provided component of the recorded changes and forgets them.
+     * The component must no longer be deferring its notifications.
+     */
+    void dispatchTo(@NonNull Component component) {
+        if (mDataSetChanged) {
+            mDataSetChanged = false;
+            component.notifyDataChanged();
+            return;
+        }
+
+        List<Change> changes = new ArrayList<>(mChanges);
+        mChanges.clear();
+        for (Change change : changes) {
+            switch (change.mType) {
+                case TYPE_CHANGE:
+                    component.notifyItemRangeChanged(
+                            change.mPositionStart, change.mItemCount, change.mPayload);
+                    break;
+                case TYPE_INSERT:
+                    component.notifyItemRangeInserted(change.mPositionStart, change.mItemCount);
+                    break;
+                case TYPE_REMOVE:
+                    component.notifyItemRangeRemoved(change.mPositionStart, change.mItemCount);
+                    break;
+                default:
+                    component.notifyItemMoved(change.mPositionStart, change.mToPosition);
+                    break;
+            }
+        }
+    }
+
+    private void add(int type, int positionStart, int itemCount, @Nullable Object payload) {
+        if (mDataSetChanged || itemCount <= 0) {
+            return;
+        }
+
+        if (!mChanges.isEmpty()) {
+            Change last = mChanges.get(mChanges.size() - 1);
+            if (merge(last, type, positionStart, itemCount, payload)) {
+                if (last.mItemCount == 0) {
+                    // An insertion that was removed again.
+                    mChanges.remove(mChanges.size() - 1);
+                }
+                return;
+            }
+        }
+        mChanges.add(new Change(type, positionStart, itemCount, payload));
+    }
+
+    /**
+     * Tries to fold a new change into the last recorded one. The new change's positions are
+     * relative to the data after the last change was applied.
+     *
+     * @return True if the last change now also describes the new one.
+     */
+    private static boolean merge(
+            @NonNull Change last,
+            int type,
+            int positionStart,
+            int itemCount,
+            @Nullable Object payload) {
+        int lastEnd = last.mPositionStart + last.mItemCount;
+        int end = positionStart + itemCount;
+        switch (last.mType) {
+            case TYPE_INSERT:
+                if (type == TYPE_INSERT
+                        && positionStart >= last.mPositionStart
+                        && positionStart <= lastEnd) {
+                    last.mItemCount += itemCount;
+                    return true;
+                } else if (type == TYPE_REMOVE
+                        && positionStart >= last.mPositionStart
+                        && end <= lastEnd) {
+                    last.mItemCount -= itemCount;
+                    return true;
+                } else if (type == TYPE_CHANGE
+                        && positionStart >= last.mPositionStart
+                        && end <= lastEnd) {
+                    // Inserted items will be bound from scratch anyway.
+                    return true;
+                }
+                return false;
+            case TYPE_REMOVE:
+                if (type == TYPE_REMOVE
+                        && positionStart <= last.mPositionStart
+                        && end >= last.mPositionStart) {
+                    last.mPositionStart = positionStart;
+                    last.mItemCount += itemCount;
+                    return true;
+                }
+                return false;
+            case TYPE_CHANGE:
+                // Changes with different payloads have to reach the view holders separately.
+                if (type == TYPE_CHANGE
+                        && payload == last.mPayload
+                        && positionStart <= lastEnd
+                        && end >= last.mPositionStart) {
+                    last.mPositionStart = Math.min(last.mPositionStart, positionStart);
+                    last.mItemCount = Math.max(lastEnd, end) - last.mPositionStart;
+                    return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    /** A single recorded change. */
+    private static final class Change {
+
+        private final int mType;
+        private int mPositionStart;
+        private int mItemCount;
+
+        /** Only used by moves. */
+        private int mToPosition;
+
+        /** Only used by changes. */
+        @Nullable private final Object mPayload;
+
+        private Change(int type, int positionStart, int itemCount, @Nullable Object payload) {
+            mType = type;
+            mPositionStart = positionStart;
+            mItemCount = itemCount;
+            mPayload = payload;
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package com.yelp.android.bento.core;
 
+import android.os.Looper;
 import androidx.annotation.CallSuper;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import androidx.recyclerview.widget.GridLayoutManager.SpanSizeLookup;
 import com.yelp.android.bento.utils.AccordionList;
+import com.yelp.android.bento.utils.AccordionList.Cursor;
 import com.yelp.android.bento.utils.AccordionList.Range;
 import com.yelp.android.bento.utils.AccordionList.RangedValue;
 import com.yelp.android.bento.utils.MathUtils;
@@ -12,6 +15,7 @@ import com.yelp.android.bento.utils.Observable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -32,30 +36,89 @@ public class ComponentGroup extends Component {
      */
     private final AccordionList<Component> mComponentAccordionList = new AccordionList<>();
 
-    /** A map from a Component to its Index in the order of the ComponentGroup. */
-    private final Map<Component, Integer> mComponentIndexMap = new HashMap<>();
+    /**
+     * The leaves of this group's hierarchy in order. Nested {@link ComponentGroup}s are flattened
+     * into their own leaves, so each entry covers the items of one non-group component, or a
+     * single gap item of a nested group. This lets any position resolve to its leaf with one
+     * lookup no matter how deeply groups are nested.
+     */
+    private final AccordionList<Component> mLeafAccordionList = new AccordionList<>();
 
-    /** A map from a Component to its corresponding {@link ComponentDataObserver}. */
-    private final Map<Component, ComponentDataObserver> mComponentDataObserverMap = new HashMap<>();
+    /**
+     * Parallel to {@link #mComponentAccordionList}. Specifies the range of entries that each child
+     * component occupies in {@link #mLeafAccordionList}.
+     */
+    private final AccordionList<Component> mLeafCountAccordionList = new AccordionList<>();
+
+    /**
+     * A map from a Component to its corresponding {@link ComponentDataObserver}, which also holds
+     * the component's entry in {@link #mComponentAccordionList} so its index can be found in
+     * O(log n) without renumbering the following components on every insertion and removal.
+     */
+    private final Map<Component, ChildComponentDataObserver> mComponentDataObserverMap =
+            new HashMap<>();
 
     private final ComponentGroupObservable mObservable = new ComponentGroupObservable();
 
-    public ComponentGroup() {
-        mSpanSizeLookup =
-                new SpanSizeLookup() {
-                    @Override
-                    public int getSpanSize(int position) {
-                        if (hasGap(position)) {
-                            return getNumberLanes();
-                        }
-                        RangedValue<Component> rangedValue =
-                                mComponentAccordionList.rangedValueAt(position);
-                        return rangedValue
-                                .mValue
-                                .getSpanSizeLookup()
-                                .getSpanSize(position - rangedValue.mRange.mLower);
+    private final HierarchyObservable mHierarchyObservable = new HierarchyObservable();
+
+    /**
+     * A map from every component in this group's hierarchy, including those in nested groups, to
+     * the group that directly contains it.
+     */
+    private final Map<Component, ComponentGroup> mDescendantParentMap = new HashMap<>();
+
+    /**
+     * The thread allowed to use the position cursors, or null for the main thread, which binds and
+     * lays out items whichever thread built the group. Lookups from other threads, such as async
+     * inflation, fall back to a plain search.
+     */
+    @Nullable private volatile Thread mPositionCursorThread = null;
+
+    /**
+     * The last position resolved by {@link #locate(int)}. Adapters bind positions in ascending or
+     * descending runs, so the next lookup usually hits this entry or one of its neighbours.
+     */
+    private final Cursor<Component> mPositionCursor = new Cursor<>();
+
+    /** The last position resolved in {@link #mLeafAccordionList}. */
+    private final Cursor<Component> mLeafCursor = new Cursor<>();
+
+    /** The least common multiple of the children's lanes, valid if {@link #mNumberLanesValid}. */
+    private int mNumberLanes = 1;
+
+    private boolean mNumberLanesValid = true;
+
+    /** The number of children without stable item IDs. */
+    private int mUnstableChildCount = 0;
+
+    private int mPositionLookups = 0;
+    private int mPositionCursorHits = 0;
+
+    /** The number of {@link #beginBatch()} calls that haven't been committed yet. */
+    private int mBatchDepth = 0;
+
+    /** Whether the children changed since the current batch began. */
+    private boolean mBatchChanged = false;
+
+    /**
+     * The span size lookup of the group, unless {@link Component#setSpanSizeLookup} replaces it or
+     * a subclass overrides {@link #getSpanSizeLookup()}.
+     */
+    private final SpanSizeLookup mDefaultSpanSizeLookup =
+            new SpanSizeLookup() {
+                @Override
+                public int getSpanSize(int position) {
+                    if (hasGap(position)) {
+                        return getNumberLanes();
                     }
-                };
+                    Cursor<Component> cursor = locate(position);
+                    return cursor.mValue.getSpanSizeLookup().getSpanSize(cursor.mOffset);
+                }
+            };
+
+    public ComponentGroup() {
+        mSpanSizeLookup = mDefaultSpanSizeLookup;
     }
 
     /**
@@ -63,7 +126,7 @@ public class ComponentGroup extends Component {
      *     ComponentGroup}.
      */
     public int getSpan() {
-        return mComponentAccordionList.span().getSize();
+        return mComponentAccordionList.spanSize();
     }
 
     /** @return The total number of components in the {@link ComponentGroup}. */
@@ -87,7 +150,7 @@ public class ComponentGroup extends Component {
      */
     @NonNull
     public Component componentAt(int position) {
-        return mComponentAccordionList.valueAt(position);
+        return locate(position).mValue;
     }
 
     /**
@@ -95,7 +158,7 @@ public class ComponentGroup extends Component {
      * @return True if the {@link ComponentGroup} contains the provided {@link Component}.
      */
     public boolean contains(@NonNull Component component) {
-        return mComponentIndexMap.containsKey(component);
+        return mComponentDataObserverMap.containsKey(component);
     }
 
     /**
@@ -104,8 +167,8 @@ public class ComponentGroup extends Component {
      *     or -1 otherwise.
      */
     public int indexOf(@NonNull Component component) {
-        Integer index = mComponentIndexMap.get(component);
-        return index == null ? -1 : index;
+        ChildComponentDataObserver observer = mComponentDataObserverMap.get(component);
+        return observer == null ? -1 : observer.getIndex();
     }
 
     /**
@@ -115,8 +178,8 @@ public class ComponentGroup extends Component {
      */
     @Nullable
     public Range rangeOf(@NonNull Component component) {
-        Integer index = mComponentIndexMap.get(component);
-        return index == null ? null : mComponentAccordionList.get(index).mRange;
+        ChildComponentDataObserver observer = mComponentDataObserverMap.get(component);
+        return observer == null ? null : mComponentAccordionList.get(observer.getIndex()).mRange;
     }
 
     /**
@@ -154,7 +217,7 @@ public class ComponentGroup extends Component {
      */
     @NonNull
     public ComponentGroup addComponent(int index, @NonNull final Component component) {
-        if (mComponentIndexMap.containsKey(component)) {
+        if (mComponentDataObserverMap.containsKey(component)) {
             throw new IllegalArgumentException("Component " + component + " already added.");
         }
 
@@ -165,17 +228,45 @@ public class ComponentGroup extends Component {
         } else {
             insertionStartIndex = getCountInternal();
         }
-        addComponentAndUpdateIndices(index, component);
-
-        ComponentDataObserver componentDataObserver = new ChildComponentDataObserver(component);
-        component.registerComponentDataObserver(componentDataObserver);
-        mComponentDataObserverMap.put(component, componentDataObserver);
+        insertChild(index, component);
 
         notifyItemRangeInserted(insertionStartIndex, component.getCountInternal());
-        mObservable.notifyOnChanged();
+        notifyGroupChanged();
         return this;
     }
 
+    /**
+     * Adds the child to the data structures that track the positions and ranges of components and
+     * notifies the parents of the new leaves and descendants, but not of the new items.
+     */
+    private void insertChild(int index, @NonNull Component component) {
+        ChildComponentDataObserver componentDataObserver =
+                new ChildComponentDataObserver(component);
+        componentDataObserver.mEntry =
+                mComponentAccordionList.add(index, component, component.getCountInternal());
+        invalidatePositionCursor();
+
+        component.registerComponentDataObserver(componentDataObserver);
+        if (component instanceof ComponentGroup) {
+            ComponentGroup group = (ComponentGroup) component;
+            group.mHierarchyObservable.registerObserver(componentDataObserver);
+        }
+        mComponentDataObserverMap.put(component, componentDataObserver);
+        componentDataObserver.mLanes = peekNumberLanes(component);
+        if (mNumberLanesValid && componentDataObserver.mLanes >= 1) {
+            mNumberLanes = MathUtils.lcm(mNumberLanes, componentDataObserver.mLanes);
+        } else {
+            // Let getNumberLanes() recompute and report the invalid lane count.
+            mNumberLanesValid = false;
+        }
+        componentDataObserver.mHasStableIds = component.hasStableIds();
+        if (!componentDataObserver.mHasStableIds) {
+            mUnstableChildCount++;
+        }
+        addLeaves(index, component);
+        addDescendants(component);
+    }
+
     /**
      * Adds a {@link Component} at the specified index to the {@link ComponentGroup}.
      *
@@ -197,13 +288,89 @@ public class ComponentGroup extends Component {
      */
     @NonNull
     public ComponentGroup addAll(@NonNull Collection<? extends Component> components) {
-        for (Component comp : components) {
-            addComponent(comp);
+        beginBatch();
+        try {
+            for (Component comp : components) {
+                addComponent(comp);
+            }
+        } finally {
+            commit();
         }
 
         return this;
     }
 
+    /**
+     * Starts a batch of changes to this {@link ComponentGroup}. Until the matching {@link
+     * #commit()}, adding, removing and changing children updates the group right away, but its
+     * observers aren't notified. On commit, all the changes are merged into as few notifications
+     * as possible, so that populating a page results in a single insertion and a single layout
+     * pass. Batches may be nested, in which case only the outermost commit notifies observers.
+     *
+     * <p>Ancestor groups only see the changes once they are committed. Changes to the leaves and
+     * descendants of a nested group are held back along with its notifications, so the ancestors'
+     * lookups such as {@link #findComponentWithIndex(int)} keep resolving the committed hierarchy.
+     *
+     * <p>Since the group's counts change right away, the batch must be committed before returning
+     * to the main looper. Otherwise a RecyclerView could lay out positions it hasn't been told
+     * about yet. Prefer {@link #batch(Runnable)}, which commits even if the changes throw.
+     */
+    public void beginBatch() {
+        if (mBatchDepth++ == 0) {
+            deferNotifications();
+            mHierarchyObservable.defer();
+        }
+    }
+
+    /**
+     * Ends a batch of changes started with {@link #beginBatch()}, notifying observers of the merged
+     * changes if this was the outermost batch.
+     *
+     * @throws IllegalStateException if no batch was started.
+     */
+    public void commit() {
+        if (mBatchDepth == 0) {
+            throw new IllegalStateException("commit() called without a matching beginBatch().");
+        }
+        if (--mBatchDepth == 0) {
+            // The ancestors update their leaves before their ranges, as outside of a batch.
+            mHierarchyObservable.dispatchDeferred();
+            dispatchDeferredNotifications();
+            if (mBatchChanged) {
+                mBatchChanged = false;
+                mObservable.notifyOnChanged();
+            }
+        }
+    }
+
+    /**
+     * Runs the provided changes in a batch, committing it before returning even if the changes
+     * throw. Must be used on the main thread.
+     *
+     * <p>See: {@link #beginBatch()}
+     *
+     * @param changes Adds, removes and changes children of this group.
+     */
+    public void batch(@NonNull Runnable changes) {
+        beginBatch();
+        try {
+            changes.run();
+        } finally {
+            commit();
+        }
+    }
+
+    /** Runs the provided changes in a {@link #batch(Runnable) batch}. */
+    @Override
+    public void coalesceNotifications(@NonNull Runnable changes) {
+        batch(changes);
+    }
+
+    /** @return True if a batch started with {@link #beginBatch()} hasn't been committed yet. */
+    public boolean isInBatch() {
+        return mBatchDepth > 0;
+    }
+
     /**
      * Replaces the old {@link Component} at the specified index in the {@link ComponentGroup} with
      * the newly provided {@link Component}.
@@ -215,7 +382,7 @@ public class ComponentGroup extends Component {
      */
     @NonNull
     public ComponentGroup replaceComponent(int index, @NonNull Component component) {
-        if (mComponentIndexMap.containsKey(component)) {
+        if (mComponentDataObserverMap.containsKey(component)) {
             throw new IllegalArgumentException("Component " + component + " already added.");
         }
         addComponent(index, component);
@@ -237,6 +404,77 @@ public class ComponentGroup extends Component {
         return replaceComponent(index, (Component) componentGroup);
     }
 
+    /**
+     * Replaces the {@link Component} at the specified index with a new one showing the same
+     * content, such as one recreated from fresh data. Unlike {@link #replaceComponent(int,
+     * Component)}, the items the two components have in common are reported as changed rather
+     * than removed and inserted, so their views are bound again in place instead of being
+     * recreated and animated.
+     *
+     * @param index The index of the {@link Component} to replace.
+     * @param component The new {@link Component}.
+     * @param payload Passed along with the change to the view holders, or null for a full rebind.
+     * @return The {@link ComponentGroup} that the update took place in.
+     */
+    @NonNull
+    public ComponentGroup updateComponent(
+            int index, @NonNull Component component, @Nullable Object payload) {
+        if (mComponentDataObserverMap.containsKey(component)) {
+            throw new IllegalArgumentException("Component " + component + " already added.");
+        }
+
+        RangedValue<Component> old = mComponentAccordionList.get(index);
+        removeChild(index, old.mValue);
+        insertChild(index, component);
+
+        notifyRangeUpdated(old.mRange, component.getCountInternal(), payload);
+        cleanupComponent(old.mValue);
+        notifyGroupChanged();
+        return this;
+    }
+
+    /**
+     * Moves the {@link Component} at the specified index so that it ends up at another index,
+     * shifting the components in between. Unlike removing and adding the component again, its
+     * items are reported as moved, so the views are kept and the move can be animated.
+     *
+     * @param fromIndex The current index of the component to move.
+     * @param toIndex The index the component should have after the move.
+     * @return The {@link ComponentGroup} the move took place in.
+     */
+    @NonNull
+    public ComponentGroup moveComponent(int fromIndex, int toIndex) {
+        if (toIndex < 0 || toIndex >= getSize()) {
+            throw new IndexOutOfBoundsException("Index: " + toIndex + ", Size: " + getSize());
+        }
+        RangedValue<Component> moved = mComponentAccordionList.get(fromIndex);
+        if (fromIndex == toIndex) {
+            return this;
+        }
+
+        Component component = moved.mValue;
+        ChildComponentDataObserver observer = mComponentDataObserverMap.get(component);
+        mComponentAccordionList.remove(fromIndex);
+        removeLeaves(fromIndex);
+        observer.mEntry = mComponentAccordionList.add(toIndex, component, moved.mRange.getSize());
+        addLeaves(toIndex, component);
+        invalidatePositionCursor();
+
+        int fromStart = moved.mRange.mLower;
+        int toStart = mComponentAccordionList.get(toIndex).mRange.mLower;
+        int itemCount = moved.mRange.getSize();
+        for (int i = 0; i < itemCount; i++) {
+            if (toStart < fromStart) {
+                notifyItemMoved(fromStart + i, toStart + i);
+            } else {
+                // Moving the first item to the end each time keeps the items in order.
+                notifyItemMoved(fromStart, toStart + itemCount - 1);
+            }
+        }
+        notifyGroupChanged();
+        return this;
+    }
+
     /**
      * Removes and returns the {@link Component} at the provided index.
      *
@@ -248,7 +486,7 @@ public class ComponentGroup extends Component {
     public Component remove(int index) {
         Component component = get(index);
         remove(index, component);
-        mObservable.notifyOnChanged();
+        notifyGroupChanged();
         return component;
     }
 
@@ -264,12 +502,24 @@ public class ComponentGroup extends Component {
 
     /** Removes all {@link Component}s from the {@link ComponentGroup}. */
     public void clear() {
+        int leafCount = mLeafAccordionList.size();
+        mNumberLanes = 1;
+        mNumberLanesValid = true;
+        mUnstableChildCount = 0;
         mComponentAccordionList.clear();
-        for (Component component : new ArrayList<>(mComponentIndexMap.keySet())) {
+        mLeafAccordionList.clear();
+        mLeafCountAccordionList.clear();
+        invalidatePositionCursor();
+        mHierarchyObservable.notifyLeavesRemoved(0, leafCount);
+        for (Component descendant : new ArrayList<>(mDescendantParentMap.keySet())) {
+            mHierarchyObservable.notifyDescendantRemoved(descendant);
+        }
+        mDescendantParentMap.clear();
+        for (Component component : new ArrayList<>(mComponentDataObserverMap.keySet())) {
             cleanupComponent(component);
         }
         notifyDataChanged();
-        mObservable.notifyOnChanged();
+        notifyGroupChanged();
     }
 
     /**
@@ -280,9 +530,8 @@ public class ComponentGroup extends Component {
     @NonNull
     @SuppressWarnings("unchecked") // Unchecked Component generics.
     public Class<? extends ComponentViewHolder> getHolderType(int position) {
-        RangedValue<Component> compPair = mComponentAccordionList.rangedValueAt(position);
-        Component component = mComponentAccordionList.valueAt(position);
-        return component.getHolderTypeInternal(position - compPair.mRange.mLower);
+        Cursor<Component> cursor = locate(position);
+        return cursor.mValue.getHolderTypeInternal(cursor.mOffset);
     }
 
     /**
@@ -293,15 +542,14 @@ public class ComponentGroup extends Component {
     @Nullable
     @Override
     public Object getPresenter(int position) {
-        RangedValue<Component> compPair = mComponentAccordionList.rangedValueAt(position);
-        Component component = mComponentAccordionList.valueAt(position);
-        return component.getPresenterInternal(position - compPair.mRange.mLower);
+        Cursor<Component> cursor = locate(position);
+        return cursor.mValue.getPresenterInternal(cursor.mOffset);
     }
 
     /** @return The total count for each component in this component group. */
     @Override
     public int getCount() {
-        return mComponentAccordionList.span().mUpper;
+        return mComponentAccordionList.spanSize();
     }
 
     /** @inheritDoc */
@@ -348,9 +596,20 @@ public class ComponentGroup extends Component {
      */
     @Override
     public Object getItem(int position) {
-        RangedValue<Component> compPair = mComponentAccordionList.rangedValueAt(position);
-        Component component = mComponentAccordionList.valueAt(position);
-        return component.getItemInternal(position - compPair.mRange.mLower);
+        Cursor<Component> cursor = locate(position);
+        return cursor.mValue.getItemInternal(cursor.mOffset);
+    }
+
+    /** @return True if every child of this group has stable item IDs. */
+    @Override
+    public boolean hasStableIds() {
+        return mUnstableChildCount == 0;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        Cursor<Component> cursor = locate(position);
+        return cursor.mValue.getItemIdInternal(cursor.mOffset);
     }
 
     /**
@@ -359,16 +618,35 @@ public class ComponentGroup extends Component {
      */
     @Override
     public final int getNumberLanes() {
-        int[] childLanes = new int[mComponentAccordionList.size()];
-        for (int i = 0; i < mComponentAccordionList.size(); i++) {
-            childLanes[i] = mComponentAccordionList.get(i).mValue.getNumberLanes();
-            if (childLanes[i] < 1) {
-                throw new IllegalStateException(
-                        "A component returned a number of lanes less than one. All components must have at least one lane. "
-                                + mComponentAccordionList.get(i).mValue.toString());
+        if (!mNumberLanesValid) {
+            int numberLanes = 1;
+            for (ChildComponentDataObserver observer : mComponentDataObserverMap.values()) {
+                observer.mLanes = observer.mComponent.getNumberLanes();
+                if (observer.mLanes < 1) {
+                    throw new IllegalStateException(
+                            "A component returned a number of lanes less than one. All components must have at least one lane. "
+                                    + observer.mComponent.toString());
+                }
+                numberLanes = MathUtils.lcm(numberLanes, observer.mLanes);
             }
+            mNumberLanes = numberLanes;
+            mNumberLanesValid = true;
         }
-        return MathUtils.lcm(childLanes);
+        return mNumberLanes;
+    }
+
+    /**
+     * Returns the lanes of a child without forcing a nested group to recompute its lanes, which
+     * could throw while the nested group is still being populated.
+     *
+     * @return The child's lanes, or 0 if they aren't known yet.
+     */
+    private static int peekNumberLanes(@NonNull Component component) {
+        if (component instanceof ComponentGroup) {
+            ComponentGroup group = (ComponentGroup) component;
+            return group.mNumberLanesValid ? group.mNumberLanes : 0;
+        }
+        return component.getNumberLanes();
     }
 
     @NonNull
@@ -377,52 +655,107 @@ public class ComponentGroup extends Component {
         return mSpanSizeLookup;
     }
 
+    /**
+     * @return The fraction of position lookups, such as {@link #getItem(int)}, that were served by
+     *     the cached position cursor without searching. Useful for profiling binding performance.
+     */
+    public float getPositionCursorHitRate() {
+        return mPositionLookups == 0 ? 0f : (float) mPositionCursorHits / mPositionLookups;
+    }
+
+    /** Resets the counters behind {@link #getPositionCursorHitRate()}. */
+    public void resetPositionCursorStats() {
+        mPositionLookups = 0;
+        mPositionCursorHits = 0;
+    }
+
     /**
      * Finds the offset of the specified component if it belongs in this ComponentGroup's hierarchy.
-     * That is, we will perform a depth-first search through all Components contained in this group
-     * and return the offset of the requested Component. Offset here refers to the number of items
-     * declared by all Components appearing before the specified Component. If this group is the
-     * root, then this value can directly be used as the index of the first view of the Component in
-     * an adapter.
+     * Offset here refers to the number of items declared by all Components appearing before the
+     * specified Component. If this group is the root, then this value can directly be used as the
+     * index of the first view of the Component in an adapter.
+     *
+     * <p>Every group keeps track of which group directly contains each of its descendants, so this
+     * only walks up from the component to this group instead of searching the whole hierarchy.
      *
      * @param component the component to search for
      * @return the offset of the component, or -1 if the component does not belong in this group or
      *     any of its children.
      */
     public int findComponentOffset(@NonNull Component component) {
-        int offset = 0;
         if (component == this) {
             return 0;
         }
 
-        for (int i = 0; i < getSize(); i++) {
-            Component candidate = get(i);
-            if (candidate == component) {
-                return offset;
-            }
-            if (candidate instanceof ComponentGroup) {
-                int maybeIndex = ((ComponentGroup) candidate).findComponentOffset(component);
-                if (maybeIndex != -1) {
-                    return offset + maybeIndex;
-                }
+        ComponentGroup parent = mDescendantParentMap.get(component);
+        if (parent == null) {
+            return -1;
+        }
+
+        int offset = 0;
+        Component current = component;
+        while (parent != null) {
+            offset += parent.mComponentAccordionList.get(parent.indexOf(current)).mRange.mLower;
+            if (parent == this) {
+                break;
             }
-            offset = rangeOf(candidate).mUpper;
+
+            // Positions in a nested group are shifted by its own start gap.
+            offset += parent.getPositionOffset();
+            current = parent;
+            parent = mDescendantParentMap.get(current);
         }
-        return -1;
+        return offset;
     }
 
     /**
-     * Finds and returns the component at lowest level (leaf) that encompasses the index.
+     * Finds and returns the component at lowest level (leaf) that encompasses the index. For the
+     * gap items of a nested {@link ComponentGroup}, that group is returned.
      *
      * @param index The index to search for.
      * @return The lowest component in the tree.
      */
     public Component findComponentWithIndex(int index) {
-        return findRangedComponentWithIndex(index).mValue;
+        if (hasGap(index)) {
+            return this;
+        }
+
+        return locate(mLeafAccordionList, mLeafCursor, index).mValue;
+    }
+
+    /**
+     * Gets the span size of the item at the specified position in a grid with the specified span
+     * count, which the lanes of every component divide. This is the span size the {@link
+     * SpanSizeLookup}s of the group and its descendants give, scaled from the lanes of the
+     * component to the grid. Each level of the tree is found through its cached cursor.
+     *
+     * @param position The position of the item.
+     * @param spanCount The number of spans of the grid.
+     * @return The number of spans the item takes in the grid.
+     */
+    int getGridSpanSize(int position, int spanCount) {
+        if (getSpanSizeLookup() != mDefaultSpanSizeLookup) {
+            // A custom lookup decides for the whole group, scaled by the lanes of the leaf.
+            return getSpanSizeLookup().getSpanSize(position)
+                    * (spanCount / findComponentWithIndex(position).getNumberLanes());
+        }
+        if (hasGap(position)) {
+            return spanCount;
+        }
+
+        Cursor<Component> cursor = locate(position);
+        Component child = cursor.mValue;
+        if (child instanceof ComponentGroup) {
+            return ((ComponentGroup) child).getGridSpanSize(cursor.mOffset, spanCount);
+        }
+        return child.getSpanSizeLookup().getSpanSize(cursor.mOffset)
+                * (spanCount / child.getNumberLanes());
     }
 
     /**
-     * Returns both the component and the absolute range within the controller.
+     * Returns both the component and the absolute range within the controller. The lookup goes
+     * straight to the leaf through a flattened index, so its cost does not depend on how deeply
+     * groups are nested.
      *
      * @param index The index to search for.
      * @return Both a component and an absolute range over the entire controller.
@@ -432,21 +765,8 @@ public class ComponentGroup extends Component {
             return new RangedValue<Component>(this, new Range(0, getCount()));
         }
 
-        RangedValue<Component> rangedValue = mComponentAccordionList.rangedValueAt(index);
-
-        if (rangedValue.mValue instanceof ComponentGroup) {
-            ComponentGroup group = (ComponentGroup) rangedValue.mValue;
-            RangedValue<Component> childRange =
-                    group.findRangedComponentWithIndex(index - rangedValue.mRange.mLower);
-
-            return new RangedValue<>(
-                    childRange.mValue,
-                    new Range(
-                            rangedValue.mRange.mLower + childRange.mRange.mLower,
-                            rangedValue.mRange.mLower + childRange.mRange.mUpper));
-        } else {
-            return rangedValue;
-        }
+        Cursor<Component> cursor = locate(mLeafAccordionList, mLeafCursor, index);
+        return new RangedValue<>(cursor.mValue, new Range(cursor.mLower, cursor.mUpper));
     }
 
     /**
@@ -502,6 +822,247 @@ public class ComponentGroup extends Component {
         }
     }
 
+    /**
+     * Resolves the child component that the position belongs to and the position's offset within
+     * it. Checks the previously resolved child and its neighbours before searching.
+     *
+     * @param position The position of the internal item across all components in the group.
+     * @return A cursor pointing at the child component. Only valid until the next lookup.
+     */
+    @NonNull
+    private Cursor<Component> locate(int position) {
+        return locate(mComponentAccordionList, mPositionCursor, position);
+    }
+
+    /**
+     * Lets another thread than the main thread use the position cursors of this group, such as the
+     * thread of a plain JVM test, which has no main looper.
+     */
+    @VisibleForTesting
+    void setPositionCursorThread(@Nullable Thread thread) {
+        mPositionCursorThread = thread;
+    }
+
+    /** @return True if the current thread may use the position cursors. */
+    private boolean isPositionCursorThread() {
+        Thread current = Thread.currentThread();
+        Thread thread = mPositionCursorThread;
+        return current == (thread != null ? thread : MainThread.THREAD);
+    }
+
+    /** Holds the main thread, resolved the first time a position is looked up. */
+    private static class MainThread {
+
+        @Nullable static final Thread THREAD = resolve();
+
+        @Nullable
+        private static Thread resolve() {
+            try {
+                return Looper.getMainLooper().getThread();
+            } catch (RuntimeException exception) {
+                // There's no main looper outside Android, so every lookup searches.
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Resolves the position in the provided list, starting from the entry the cached cursor points
+     * at and its neighbours.
+     */
+    @NonNull
+    private Cursor<Component> locate(
+            @NonNull AccordionList<Component> list,
+            @NonNull Cursor<Component> cachedCursor,
+            int position) {
+        if (!isPositionCursorThread()) {
+            Cursor<Component> cursor = new Cursor<>();
+            list.locate(position, cursor);
+            return cursor;
+        }
+
+        mPositionLookups++;
+        if (cachedCursor.contains(position) || moveCursorTowards(list, cachedCursor, position)) {
+            mPositionCursorHits++;
+            cachedCursor.mOffset = position - cachedCursor.mLower;
+        } else {
+            list.locate(position, cachedCursor);
+        }
+        return cachedCursor;
+    }
+
+    /**
+     * Steps the cursor to the adjacent entry in the direction of the position, skipping over empty
+     * entries.
+     *
+     * @return True if the cursor now points at the entry containing the position.
+     */
+    private static boolean moveCursorTowards(
+            @NonNull AccordionList<Component> list,
+            @NonNull Cursor<Component> cursor,
+            int position) {
+        boolean forward = position >= cursor.mUpper;
+        while (forward ? list.moveToNext(cursor) : list.moveToPrevious(cursor)) {
+            if (cursor.contains(position)) {
+                return true;
+            } else if (cursor.mUpper > cursor.mLower) {
+                // The neighbour is not empty, so this is a jump rather than a sequential access.
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /** Forgets the cached position cursors. Must be called whenever child ranges change. */
+    private void invalidatePositionCursor() {
+        mPositionCursor.reset();
+        mLeafCursor.reset();
+    }
+
+    /** @return The index of the first entry of the child at the index in the leaf list. */
+    private int leafOffsetOf(int index) {
+        return index < mLeafCountAccordionList.size()
+                ? mLeafCountAccordionList.get(index).mRange.mLower
+                : mLeafCountAccordionList.spanSize();
+    }
+
+    /**
+     * Adds the leaves of a newly added child to the leaf list and notifies the parents. A nested
+     * group contributes its own gap items and leaves, anything else is a single leaf.
+     */
+    private void addLeaves(int index, @NonNull Component component) {
+        int leafStart = leafOffsetOf(index);
+        int leafCount = 0;
+        if (component instanceof ComponentGroup) {
+            ComponentGroup group = (ComponentGroup) component;
+            int leadingGaps = group.getPositionOffset();
+            int trailingGaps = group.getCountInternal() - group.getCount() - leadingGaps;
+            for (int i = 0; i < leadingGaps; i++) {
+                mLeafAccordionList.add(leafStart + leafCount++, group, 1);
+            }
+            for (RangedValue<Component> leaf : group.mLeafAccordionList) {
+                mLeafAccordionList.add(
+                        leafStart + leafCount++, leaf.mValue, leaf.mRange.getSize());
+            }
+            for (int i = 0; i < trailingGaps; i++) {
+                mLeafAccordionList.add(leafStart + leafCount++, group, 1);
+            }
+            ChildComponentDataObserver observer = mComponentDataObserverMap.get(group);
+            observer.mLeadingGapLeaves = leadingGaps;
+            observer.mTrailingGapLeaves = trailingGaps;
+        } else {
+            mLeafAccordionList.add(leafStart, component, component.getCountInternal());
+            leafCount = 1;
+        }
+        mLeafCountAccordionList.add(index, component, leafCount);
+        invalidatePositionCursor();
+
+        for (int i = leafStart; i < leafStart + leafCount; i++) {
+            RangedValue<Component> leaf = mLeafAccordionList.get(i);
+            mHierarchyObservable.notifyLeafInserted(i, leaf.mValue, leaf.mRange.getSize());
+        }
+    }
+
+    /** Records a newly added child and, for a nested group, its descendants. */
+    private void addDescendants(@NonNull Component component) {
+        mDescendantParentMap.put(component, this);
+        mHierarchyObservable.notifyDescendantAdded(component, this);
+        if (component instanceof ComponentGroup) {
+            for (Entry<Component, ComponentGroup> entry :
+                    ((ComponentGroup) component).mDescendantParentMap.entrySet()) {
+                mDescendantParentMap.put(entry.getKey(), entry.getValue());
+                mHierarchyObservable.notifyDescendantAdded(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /** Forgets a removed child and, for a nested group, its descendants. */
+    private void removeDescendants(@NonNull Component component) {
+        if (component instanceof ComponentGroup) {
+            for (Component descendant :
+                    ((ComponentGroup) component).mDescendantParentMap.keySet()) {
+                mDescendantParentMap.remove(descendant);
+                mHierarchyObservable.notifyDescendantRemoved(descendant);
+            }
+        }
+        mDescendantParentMap.remove(component);
+        mHierarchyObservable.notifyDescendantRemoved(component);
+    }
+
+    /** Removes the leaves of a removed child from the leaf list and notifies the parents. */
+    private void removeLeaves(int index) {
+        Range leafRange = mLeafCountAccordionList.get(index).mRange;
+        for (int i = 0; i < leafRange.getSize(); i++) {
+            mLeafAccordionList.remove(leafRange.mLower);
+        }
+        mLeafCountAccordionList.remove(index);
+        invalidatePositionCursor();
+
+        mHierarchyObservable.notifyLeavesRemoved(leafRange.mLower, leafRange.getSize());
+    }
+
+    /**
+     * Updates the leaf entry of a child after its item count changed. Nested groups report changes
+     * to their leaves through the HierarchyObserver, so only their gap leaves are updated here.
+     */
+    private void resizeLeaf(int index, @NonNull Component component, int size) {
+        if (component instanceof ComponentGroup) {
+            resizeGapLeaves(index, (ComponentGroup) component);
+            return;
+        }
+
+        int leafIndex = leafOffsetOf(index);
+        mLeafAccordionList.set(leafIndex, component, size);
+        invalidatePositionCursor();
+
+        mHierarchyObservable.notifyLeafResized(leafIndex, size);
+    }
+
+    /**
+     * Adds or removes gap leaves of a nested group child whose start or end gap changed since its
+     * leaves were added, and notifies the parents.
+     */
+    private void resizeGapLeaves(int index, @NonNull ComponentGroup group) {
+        ChildComponentDataObserver observer = mComponentDataObserverMap.get(group);
+        int leadingGaps = group.getPositionOffset();
+        int trailingGaps = group.getCountInternal() - group.getCount() - leadingGaps;
+        if (leadingGaps == observer.mLeadingGapLeaves
+                && trailingGaps == observer.mTrailingGapLeaves) {
+            return;
+        }
+
+        int leafStart = leafOffsetOf(index);
+        int leafCount = mLeafCountAccordionList.get(index).mRange.getSize();
+        // The trailing gaps go first so that they don't move with the leading ones.
+        resizeGapLeaves(
+                group,
+                leafStart + leafCount - observer.mTrailingGapLeaves,
+                observer.mTrailingGapLeaves,
+                trailingGaps);
+        resizeGapLeaves(group, leafStart, observer.mLeadingGapLeaves, leadingGaps);
+        leafCount += leadingGaps - observer.mLeadingGapLeaves;
+        leafCount += trailingGaps - observer.mTrailingGapLeaves;
+        mLeafCountAccordionList.set(index, group, leafCount);
+        observer.mLeadingGapLeaves = leadingGaps;
+        observer.mTrailingGapLeaves = trailingGaps;
+        invalidatePositionCursor();
+    }
+
+    /** Grows or shrinks a run of gap leaves of a nested group starting at the leaf index. */
+    private void resizeGapLeaves(
+            @NonNull ComponentGroup group, int leafIndex, int oldCount, int newCount) {
+        for (int i = oldCount; i < newCount; i++) {
+            mLeafAccordionList.add(leafIndex, group, 1);
+            mHierarchyObservable.notifyLeafInserted(leafIndex, group, 1);
+        }
+        if (newCount < oldCount) {
+            for (int i = newCount; i < oldCount; i++) {
+                mLeafAccordionList.remove(leafIndex);
+            }
+            mHierarchyObservable.notifyLeavesRemoved(leafIndex, oldCount - newCount);
+        }
+    }
+
     /**
      *
      *
@@ -528,33 +1089,34 @@ public class ComponentGroup extends Component {
      * </pre>
      */
     private void notifyRangeUpdated(@NonNull Range originalRange, int newSize) {
+        notifyRangeUpdated(originalRange, newSize, null);
+    }
+
+    /** Like {@link #notifyRangeUpdated(Range, int)}, passing the payload along with the change. */
+    private void notifyRangeUpdated(
+            @NonNull Range originalRange, int newSize, @Nullable Object payload) {
         int oldSize = originalRange.getSize();
         int sizeChange = newSize - oldSize;
         if (sizeChange == 0) {
-            notifyItemRangeChanged(originalRange.mLower, newSize);
+            notifyItemRangeChanged(originalRange.mLower, newSize, payload);
         } else if (sizeChange > 0) {
-            notifyItemRangeChanged(originalRange.mLower, oldSize);
+            notifyItemRangeChanged(originalRange.mLower, oldSize, payload);
             notifyItemRangeInserted(originalRange.mLower + oldSize, sizeChange);
         } else if (sizeChange < 0) {
-            notifyItemRangeChanged(originalRange.mLower, newSize);
+            notifyItemRangeChanged(originalRange.mLower, newSize, payload);
             notifyItemRangeRemoved(originalRange.mLower + newSize, Math.abs(sizeChange));
         }
     }
 
     /**
-     * Adds the provided {@link Component} to the {@link ComponentGroup} at the specified index and
-     * does the hard work of updating internal indices we use to order {@link Component}s within the
-     * the {@link ComponentGroup}.
-     *
-     * @param index The index at which to add the {@link Component}.
-     * @param component The {@link Component} to add to this {@link ComponentGroup}.
+     * Notifies {@link ComponentGroupDataObserver}s that the children changed, or remembers to do so
+     * on commit if a batch is in progress.
      */
-    private void addComponentAndUpdateIndices(int index, @NonNull Component component) {
-        // Add and update indices
-        mComponentAccordionList.add(index, component, component.getCountInternal());
-        mComponentIndexMap.put(component, index);
-        for (int i = index + 1; i < mComponentAccordionList.size(); i++) {
-            mComponentIndexMap.put(mComponentAccordionList.get(i).mValue, i);
+    private void notifyGroupChanged() {
+        if (mBatchDepth > 0) {
+            mBatchChanged = true;
+        } else {
+            mObservable.notifyOnChanged();
         }
     }
 
@@ -569,7 +1131,7 @@ public class ComponentGroup extends Component {
      */
     private boolean remove(int index, @Nullable Component component) {
         Range range = mComponentAccordionList.get(index).mRange;
-        mComponentAccordionList.remove(index);
+        removeChild(index, component);
         notifyItemRangeRemoved(range.mLower, range.getSize());
         if (component != null) {
             cleanupComponent(component);
@@ -577,23 +1139,40 @@ public class ComponentGroup extends Component {
         return component != null;
     }
 
+    /**
+     * Removes the child from the data structures that track the positions and ranges of components
+     * and notifies the parents of the removed leaves and descendants, but not of the removed items.
+     * The child's observers are left to {@link #cleanupComponent(Component)}.
+     */
+    private void removeChild(int index, @Nullable Component component) {
+        mComponentAccordionList.remove(index);
+        removeLeaves(index);
+        if (component != null) {
+            removeDescendants(component);
+            ChildComponentDataObserver observer = mComponentDataObserverMap.get(component);
+            if (observer.mLanes != 1) {
+                // The least common multiple can't be updated by removing a factor.
+                mNumberLanesValid = false;
+            }
+            if (!observer.mHasStableIds) {
+                mUnstableChildCount--;
+            }
+        }
+        invalidatePositionCursor();
+    }
+
     /**
      * A method to "clean up" after a component has been removed. - Removes all observers from the
-     * provided {@link Component}. - Updates the indices of all components in the component index
-     * map to reflect that the component is removed. - Notifies the {@link ComponentGroupObservable}
-     * that the component is removed.
+     * provided {@link Component}. - Notifies the {@link ComponentGroupObservable} that the
+     * component is removed.
      *
      * @param component The component that has been removed.
      */
     private void cleanupComponent(@NonNull Component component) {
-        component.unregisterComponentDataObserver(mComponentDataObserverMap.get(component));
-        mComponentDataObserverMap.remove(component);
-
-        int removalIndex = mComponentIndexMap.remove(component);
-        for (Entry<Component, Integer> entry : mComponentIndexMap.entrySet()) {
-            if (entry.getValue() > removalIndex) {
-                entry.setValue(entry.getValue() - 1);
-            }
+        ChildComponentDataObserver observer = mComponentDataObserverMap.remove(component);
+        component.unregisterComponentDataObserver(observer);
+        if (component instanceof ComponentGroup) {
+            ((ComponentGroup) component).mHierarchyObservable.unregisterObserver(observer);
         }
 
         mObservable.notifyOnComponentRemoved(component);
@@ -602,70 +1181,274 @@ public class ComponentGroup extends Component {
     /**
      * An observer that listens for changes to a Components's internals and then updates the {@link
      * AccordionList} so that we can keep track of the position of each internal item in the
-     * ComponentGroup to which the Component belongs.
+     * ComponentGroup to which the Component belongs. When the Component is itself a group, it also
+     * mirrors changes to the nested group's leaves into this group's leaf list.
      */
-    private class ChildComponentDataObserver implements ComponentDataObserver {
+    private class ChildComponentDataObserver implements ComponentDataObserver, HierarchyObserver {
 
         private final Component mComponent;
 
+        /** The number of leading gap leaves of the nested group in the leaf list. */
+        private int mLeadingGapLeaves = 0;
+
+        /** The number of trailing gap leaves of the nested group in the leaf list. */
+        private int mTrailingGapLeaves = 0;
+
+        /** The component's lanes when the group's lane count was last computed. */
+        private int mLanes = 1;
+
+        /** Whether the component had stable IDs when {@link #mUnstableChildCount} was updated. */
+        private boolean mHasStableIds = false;
+
+        /** The component's entry in {@link #mComponentAccordionList}. */
+        private AccordionList.Entry<Component> mEntry;
+
         private ChildComponentDataObserver(@NonNull Component component) {
             mComponent = component;
         }
 
         @Override
         public void onChanged() {
-            int listPosition = mComponentIndexMap.get(mComponent);
+            checkLanes();
+            checkStableIds();
+            int listPosition = getIndex();
             Range originalRange = mComponentAccordionList.get(listPosition).mRange;
             int newSize = mComponent.getCountInternal();
             mComponentAccordionList.set(listPosition, mComponent, newSize);
+            invalidatePositionCursor();
+            resizeLeaf(listPosition, mComponent, newSize);
 
             notifyRangeUpdated(originalRange, newSize);
-            mObservable.notifyOnChanged();
+            notifyGroupChanged();
         }
 
         @Override
         public void onItemRangeChanged(int positionStart, int itemCount) {
-            int listPosition = mComponentIndexMap.get(mComponent);
+            onItemRangeChanged(positionStart, itemCount, null);
+        }
+
+        @Override
+        public void onItemRangeChanged(
+                int positionStart, int itemCount, @Nullable Object payload) {
+            checkLanes();
+            checkStableIds();
+            int listPosition = getIndex();
             Range originalRange = mComponentAccordionList.get(listPosition).mRange;
 
-            notifyItemRangeChanged(originalRange.mLower + positionStart, itemCount);
-            mObservable.notifyOnChanged();
+            notifyItemRangeChanged(originalRange.mLower + positionStart, itemCount, payload);
+            notifyGroupChanged();
         }
 
         @Override
         public void onItemRangeInserted(int positionStart, int itemCount) {
-            int listPosition = mComponentIndexMap.get(mComponent);
+            checkLanes();
+            checkStableIds();
+            int listPosition = getIndex();
             Range originalRange = mComponentAccordionList.get(listPosition).mRange;
             mComponentAccordionList.set(
                     listPosition,
                     mComponentAccordionList.get(listPosition).mValue,
                     originalRange.getSize() + itemCount);
+            invalidatePositionCursor();
+            resizeLeaf(listPosition, mComponent, originalRange.getSize() + itemCount);
 
             notifyItemRangeInserted(originalRange.mLower + positionStart, itemCount);
-            mObservable.notifyOnChanged();
+            notifyGroupChanged();
         }
 
         @Override
         public void onItemRangeRemoved(int positionStart, int itemCount) {
-            int listPosition = mComponentIndexMap.get(mComponent);
+            checkLanes();
+            checkStableIds();
+            int listPosition = getIndex();
             Range originalRange = mComponentAccordionList.get(listPosition).mRange;
             mComponentAccordionList.set(
                     listPosition,
                     mComponentAccordionList.get(listPosition).mValue,
                     originalRange.getSize() - itemCount);
+            invalidatePositionCursor();
+            resizeLeaf(listPosition, mComponent, originalRange.getSize() - itemCount);
 
             notifyItemRangeRemoved(originalRange.mLower + positionStart, itemCount);
-            mObservable.notifyOnChanged();
+            notifyGroupChanged();
         }
 
         @Override
         public void onItemMoved(int fromPosition, int toPosition) {
-            int listPosition = mComponentIndexMap.get(mComponent);
+            checkLanes();
+            checkStableIds();
+            int listPosition = getIndex();
             Range originalRange = mComponentAccordionList.get(listPosition).mRange;
 
             notifyItemMoved(originalRange.mLower + fromPosition, originalRange.mLower + toPosition);
-            mObservable.notifyOnChanged();
+            notifyGroupChanged();
+        }
+
+        /** @return The current index of the component in the group. */
+        private int getIndex() {
+            return mComponentAccordionList.indexOf(mEntry);
         }
+
+        /**
+         * Components usually only change their lanes along with their data, so the group's lane
+         * count is only recomputed if this component's lanes differ from the last computation.
+         */
+        private void checkLanes() {
+            if (mNumberLanesValid && peekNumberLanes(mComponent) != mLanes) {
+                mNumberLanesValid = false;
+            }
+        }
+
+        /** Nested groups gain or lose stable IDs as their children change. */
+        private void checkStableIds() {
+            boolean hasStableIds = mComponent.hasStableIds();
+            if (hasStableIds != mHasStableIds) {
+                mHasStableIds = hasStableIds;
+                mUnstableChildCount += hasStableIds ? -1 : 1;
+            }
+        }
+
+        @Override
+        public void onLeafInserted(int leafIndex, @NonNull Component leaf, int size) {
+            int listPosition = getIndex();
+            int absoluteLeafIndex = leafOffsetOf(listPosition) + mLeadingGapLeaves + leafIndex;
+            mLeafAccordionList.add(absoluteLeafIndex, leaf, size);
+            mLeafCountAccordionList.set(
+                    listPosition,
+                    mComponent,
+                    mLeafCountAccordionList.get(listPosition).mRange.getSize() + 1);
+            invalidatePositionCursor();
+
+            mHierarchyObservable.notifyLeafInserted(absoluteLeafIndex, leaf, size);
+        }
+
+        @Override
+        public void onLeavesRemoved(int leafStart, int leafCount) {
+            int listPosition = getIndex();
+            int absoluteLeafStart = leafOffsetOf(listPosition) + mLeadingGapLeaves + leafStart;
+            for (int i = 0; i < leafCount; i++) {
+                mLeafAccordionList.remove(absoluteLeafStart);
+            }
+            mLeafCountAccordionList.set(
+                    listPosition,
+                    mComponent,
+                    mLeafCountAccordionList.get(listPosition).mRange.getSize() - leafCount);
+            invalidatePositionCursor();
+
+            mHierarchyObservable.notifyLeavesRemoved(absoluteLeafStart, leafCount);
+        }
+
+        @Override
+        public void onLeafResized(int leafIndex, int size) {
+            int listPosition = getIndex();
+            int absoluteLeafIndex = leafOffsetOf(listPosition) + mLeadingGapLeaves + leafIndex;
+            mLeafAccordionList.set(
+                    absoluteLeafIndex, mLeafAccordionList.get(absoluteLeafIndex).mValue, size);
+            invalidatePositionCursor();
+
+            mHierarchyObservable.notifyLeafResized(absoluteLeafIndex, size);
+        }
+
+        @Override
+        public void onDescendantAdded(
+                @NonNull Component descendant, @NonNull ComponentGroup parent) {
+            mDescendantParentMap.put(descendant, parent);
+            mHierarchyObservable.notifyDescendantAdded(descendant, parent);
+        }
+
+        @Override
+        public void onDescendantRemoved(@NonNull Component descendant) {
+            mDescendantParentMap.remove(descendant);
+            mHierarchyObservable.notifyDescendantRemoved(descendant);
+        }
+    }
+
+    /**
+     * An observer that a group registers on its nested groups to keep its leaf list and descendant
+     * map in sync with theirs. Leaf indices are relative to the leaf list of the group that
+     * changed.
+     */
+    private interface HierarchyObserver {
+
+        void onLeafInserted(int leafIndex, @NonNull Component leaf, int size);
+
+        void onLeavesRemoved(int leafStart, int leafCount);
+
+        void onLeafResized(int leafIndex, int size);
+
+        void onDescendantAdded(@NonNull Component descendant, @NonNull ComponentGroup parent);
+
+        void onDescendantRemoved(@NonNull Component descendant);
+    }
+
+    /**
+     * Notifies parent groups of changes to the hierarchy of a {@link ComponentGroup}. During a
+     * batch, the notifications are held back in order until it's committed.
+     */
+    private static class HierarchyObservable extends Observable<HierarchyObserver> {
+
+        @Nullable private List<HierarchyNotification> mDeferred = null;
+
+        /** Holds back notifications until {@link #dispatchDeferred()}. */
+        void defer() {
+            if (mDeferred == null) {
+                mDeferred = new ArrayList<>();
+            }
+        }
+
+        /** Dispatches the notifications held back since {@link #defer()} in order. */
+        void dispatchDeferred() {
+            List<HierarchyNotification> deferred = mDeferred;
+            mDeferred = null;
+            if (deferred != null) {
+                for (HierarchyNotification notification : deferred) {
+                    dispatch(notification);
+                }
+            }
+        }
+
+        void notifyLeafInserted(int leafIndex, @NonNull Component leaf, int size) {
+            send(observer -> observer.onLeafInserted(leafIndex, leaf, size));
+        }
+
+        void notifyLeavesRemoved(int leafStart, int leafCount) {
+            if (leafCount == 0) {
+                return;
+            }
+            send(observer -> observer.onLeavesRemoved(leafStart, leafCount));
+        }
+
+        void notifyLeafResized(int leafIndex, int size) {
+            send(observer -> observer.onLeafResized(leafIndex, size));
+        }
+
+        void notifyDescendantAdded(@NonNull Component descendant, @NonNull ComponentGroup parent) {
+            send(observer -> observer.onDescendantAdded(descendant, parent));
+        }
+
+        void notifyDescendantRemoved(@NonNull Component descendant) {
+            send(observer -> observer.onDescendantRemoved(descendant));
+        }
+
+        private void send(@NonNull HierarchyNotification notification) {
+            if (mDeferred != null) {
+                mDeferred.add(notification);
+            } else {
+                dispatch(notification);
+            }
+        }
+
+        private void dispatch(@NonNull HierarchyNotification notification) {
+            for (int i = mObservers.size() - 1; i >= 0; i--) {
+                notification.sendTo(mObservers.get(i));
+            }
+        }
+    }
+
+    /** A change to the hierarchy of a {@link ComponentGroup}, sent to each of its parents. */
+    private interface HierarchyNotification {
+
+        void sendTo(@NonNull HierarchyObserver observer);
     }
 
     /** An observable for clients that want to subscribe to a {@link ComponentGroup}'s changes. */
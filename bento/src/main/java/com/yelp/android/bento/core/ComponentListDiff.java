@@ -0,0 +1,301 @@
+package com.yelp.android.bento.core;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The difference between two lists of {@link Component}s, computed so that a {@link
+ * ComponentGroup} holding the old list can be turned into the new list with the fewest component
+ * insertions, moves and removals. Components are matched by identity, or by the key of a {@link
+ * KeyProvider} so that a component recreated from fresh data can take the place of the old one,
+ * its items being reported as changed.
+ *
+ * <p>Calculating the difference only reads the two lists and can be done on a background thread.
+ * Applying it must happen on the main thread.
+ */
+public final class ComponentListDiff {
+
+    /** Marks a new component that doesn't match any old component. */
+    private static final int NO_MATCH = -1;
+
+    private final List<Component> mOldComponents;
+    private final List<Component> mNewComponents;
+    @Nullable private final KeyProvider mKeyProvider;
+
+    /** For every new component, the index of the old component it matches or NO_MATCH. */
+    private final int[] mOldIndices;
+
+    /** For every new component, true if it keeps its place and doesn't need to be moved. */
+    private final boolean[] mKept;
+
+    /** For every new component replacing an old one with the same key, the change payload. */
+    private final Object[] mPayloads;
+
+    private final List<Component> mInsertedComponents = new ArrayList<>();
+    private final List<Component> mRemovedComponents = new ArrayList<>();
+
+    private ComponentListDiff(
+            @NonNull List<Component> oldComponents,
+            @NonNull List<Component> newComponents,
+            @Nullable KeyProvider keyProvider) {
+        mOldComponents = oldComponents;
+        mNewComponents = newComponents;
+        mKeyProvider = keyProvider;
+        mOldIndices = matchComponents(oldComponents, newComponents, keyProvider);
+        mKept = findKeptComponents(mOldIndices);
+        mPayloads = new Object[newComponents.size()];
+        for (int i = 0; i < mPayloads.length; i++) {
+            Component newComponent = newComponents.get(i);
+            if (keyProvider != null
+                    && mOldIndices[i] != NO_MATCH
+                    && oldComponents.get(mOldIndices[i]) != newComponent) {
+                mPayloads[i] =
+                        keyProvider.getChangePayload(
+                                oldComponents.get(mOldIndices[i]), newComponent);
+            }
+        }
+    }
+
+    /**
+     * Calculates the difference between two lists of components. The lists are copied, so they
+     * may be changed once this returns.
+     *
+     * @param oldComponents The components currently in the group the diff will be applied to.
+     * @param newComponents The components the group should hold once the diff is applied.
+     * @param keyProvider Provides the keys used to match old and new components, or null to match
+     *     them by identity.
+     * @throws IllegalArgumentException if either list contains the same key twice.
+     */
+    @WorkerThread
+    @NonNull
+    public static ComponentListDiff calculate(
+            @NonNull List<? extends Component> oldComponents,
+            @NonNull List<? extends Component> newComponents,
+            @Nullable KeyProvider keyProvider) {
+        return new ComponentListDiff(
+                new ArrayList<>(oldComponents), new ArrayList<>(newComponents), keyProvider);
+    }
+
+    /**
+     * Turns the children of the provided group into the new list of components. The group is
+     * notified of each step separately, so callers will usually want to apply the diff within a
+     * {@link ComponentGroup#beginBatch() batch}.
+     *
+     * @throws IllegalStateException if the group's children changed since the diff was calculated,
+     *     see {@link #matchesChildrenOf(ComponentGroup)}.
+     */
+    @MainThread
+    public void applyTo(@NonNull ComponentGroup group) {
+        if (!matchesChildrenOf(group)) {
+            throw new IllegalStateException(
+                    "The children of the group changed since the diff was calculated.");
+        }
+
+        mInsertedComponents.clear();
+        mRemovedComponents.clear();
+
+        boolean[] oldMatched = new boolean[mOldComponents.size()];
+        for (int oldIndex : mOldIndices) {
+            if (oldIndex != NO_MATCH) {
+                oldMatched[oldIndex] = true;
+            }
+        }
+        // Going backwards, so the indices of the components still to be removed don't change.
+        for (int i = oldMatched.length - 1; i >= 0; i--) {
+            if (!oldMatched[i]) {
+                mRemovedComponents.add(group.remove(i));
+            }
+        }
+
+        // The components that end up in the group. Matched components keep their old instance
+        // until the end, so that they can be moved.
+        int newSize = mNewComponents.size();
+        Component[] placed = new Component[newSize];
+        for (int i = 0; i < newSize; i++) {
+            placed[i] = mOldIndices[i] == NO_MATCH
+                    ? mNewComponents.get(i)
+                    : mOldComponents.get(mOldIndices[i]);
+        }
+
+        // Going backwards, every component is put right before its successor, which is already in
+        // place. The kept components are in the right order relative to each other, so they stay.
+        for (int i = newSize - 1; i >= 0; i--) {
+            if (mKept[i]) {
+                continue;
+            }
+            int target = i == newSize - 1 ? group.getSize() : group.indexOf(placed[i + 1]);
+            if (mOldIndices[i] == NO_MATCH) {
+                group.addComponent(target, placed[i]);
+                mInsertedComponents.add(placed[i]);
+            } else {
+                int current = group.indexOf(placed[i]);
+                group.moveComponent(current, current < target ? target - 1 : target);
+            }
+        }
+
+        // Components that were matched by key but recreated take the place of their old instance,
+        // so that their items are bound again rather than recreated.
+        for (int i = 0; i < newSize; i++) {
+            if (placed[i] != mNewComponents.get(i)) {
+                group.updateComponent(i, mNewComponents.get(i), mPayloads[i]);
+                mRemovedComponents.add(placed[i]);
+                mInsertedComponents.add(mNewComponents.get(i));
+            }
+        }
+    }
+
+    /** @return The components added to the group by the last {@link #applyTo(ComponentGroup)}. */
+    @NonNull
+    public List<Component> getInsertedComponents() {
+        return mInsertedComponents;
+    }
+
+    /**
+     * @return The components removed from the group by the last {@link
+     *     #applyTo(ComponentGroup)}, including old instances replaced by a new component with the
+     *     same key. Those new components are in {@link #getInsertedComponents()}.
+     */
+    @NonNull
+    public List<Component> getRemovedComponents() {
+        return mRemovedComponents;
+    }
+
+    /**
+     * @return True if the group's children are still the old components the diff was calculated
+     *     from, so it can be applied. Otherwise the diff should be calculated again, off the main
+     *     thread, against the current children.
+     */
+    @MainThread
+    public boolean matchesChildrenOf(@NonNull ComponentGroup group) {
+        if (group.getSize() != mOldComponents.size()) {
+            return false;
+        }
+        for (int i = 0; i < mOldComponents.size(); i++) {
+            if (group.get(i) != mOldComponents.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** @return For every new component, the index of the matching old component or NO_MATCH. */
+    @NonNull
+    private static int[] matchComponents(
+            @NonNull List<Component> oldComponents,
+            @NonNull List<Component> newComponents,
+            @Nullable KeyProvider keyProvider) {
+        Map<Object, Integer> oldIndexMap =
+                keyProvider == null ? new IdentityHashMap<>() : new HashMap<>();
+        for (int i = 0; i < oldComponents.size(); i++) {
+            Object key = keyOf(oldComponents.get(i), keyProvider);
+            if (oldIndexMap.put(key, i) != null) {
+                throw new IllegalArgumentException("Duplicate component key: " + key);
+            }
+        }
+
+        Map<Object, Boolean> newKeys =
+                keyProvider == null ? new IdentityHashMap<>() : new HashMap<>();
+        int[] oldIndices = new int[newComponents.size()];
+        for (int i = 0; i < newComponents.size(); i++) {
+            Object key = keyOf(newComponents.get(i), keyProvider);
+            if (newKeys.put(key, Boolean.TRUE) != null) {
+                throw new IllegalArgumentException("Duplicate component key: " + key);
+            }
+            Integer oldIndex = oldIndexMap.get(key);
+            oldIndices[i] = oldIndex == null ? NO_MATCH : oldIndex;
+        }
+        return oldIndices;
+    }
+
+    @NonNull
+    private static Object keyOf(@NonNull Component component, @Nullable KeyProvider keyProvider) {
+        if (keyProvider == null) {
+            return component;
+        }
+        Object key = keyProvider.getKey(component);
+        if (key == null) {
+            throw new IllegalArgumentException("Null key for component: " + component);
+        }
+        return key;
+    }
+
+    /**
+     * Finds the largest set of matched components that are in the same order in both lists, using
+     * the O(n log n) longest increasing subsequence algorithm on the old indices. Every other
+     * matched component has to be moved.
+     */
+    @NonNull
+    private static boolean[] findKeptComponents(@NonNull int[] oldIndices) {
+        int n = oldIndices.length;
+        // tails[k] is the new index ending the best increasing run of length k + 1 found so far.
+        int[] tails = new int[n];
+        int[] previous = new int[n];
+        int length = 0;
+        for (int i = 0; i < n; i++) {
+            if (oldIndices[i] == NO_MATCH) {
+                continue;
+            }
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (oldIndices[tails[middle]] < oldIndices[i]) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            previous[i] = low > 0 ? tails[low - 1] : NO_MATCH;
+            tails[low] = i;
+            if (low == length) {
+                length++;
+            }
+        }
+
+        boolean[] kept = new boolean[n];
+        for (int i = length > 0 ? tails[length - 1] : NO_MATCH; i != NO_MATCH; i = previous[i]) {
+            kept[i] = true;
+        }
+        return kept;
+    }
+
+    /**
+     * Provides the keys used to match old and new components. Its methods are called while the
+     * diff is calculated, which happens on a background thread when diffing through {@link
+     * com.yelp.android.bento.componentcontrollers.RecyclerViewComponentController#submitComponents},
+     * so they must be safe to call from any thread and must not touch views.
+     */
+    public interface KeyProvider {
+
+        /**
+         * Called on the thread calculating the diff.
+         *
+         * @return A key that is equal to the key of the old component the provided component
+         *     should replace. Keys must be unique within a list.
+         */
+        @WorkerThread
+        @NonNull
+        Object getKey(@NonNull Component component);
+
+        /**
+         * Called on the thread calculating the diff for every new component that replaces a
+         * different old instance with the same key.
+         *
+         * @return The payload passed along with the change of the replaced items, which reaches
+         *     {@link ComponentViewHolder#bind(Object, Object, List)}, or null for a full rebind.
+         */
+        @WorkerThread
+        @Nullable
+        default Object getChangePayload(
+                @NonNull Component oldComponent, @NonNull Component newComponent) {
+            return null;
+        }
+    }
+}
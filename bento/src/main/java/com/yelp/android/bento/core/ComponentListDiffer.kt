@@ -0,0 +1,68 @@
+package com.yelp.android.bento.core
+
+import android.view.View
+import com.yelp.android.bento.core.ComponentListDiff.KeyProvider
+import com.yelp.android.bento.utils.doOnLifecycleDestroy
+import kotlin.coroutines.CoroutineContext
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancelChildren
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+
+/**
+ * Calculates [ComponentListDiff]s on a background dispatcher and hands them back on the main
+ * thread to be applied. Submitting a new list cancels the previous submission if its diff hasn't
+ * been applied yet, so only the latest list ever reaches the component group. Submissions still
+ * pending are cancelled when the screen of the provided view is destroyed.
+ */
+internal class ComponentListDiffer @JvmOverloads constructor(
+    view: View,
+    private val diffDispatcher: CoroutineDispatcher = Dispatchers.Default
+) : CoroutineScope {
+
+    private val job = SupervisorJob()
+    override val coroutineContext: CoroutineContext = job + Dispatchers.Main
+
+    private var pendingDiff: Job? = null
+
+    init {
+        view.doOnLifecycleDestroy { cancel() }
+    }
+
+    /**
+     * Diffs the children of [group] against [newComponents] off the main thread and calls
+     * [applyDiff] with the result on the main thread. If the children changed while the diff was
+     * calculated, it's calculated again off the main thread, so [applyDiff] always gets a diff
+     * that matches them. [newComponents] is copied before this returns.
+     */
+    fun submit(
+        group: ComponentGroup,
+        newComponents: List<Component>,
+        keyProvider: KeyProvider?,
+        applyDiff: (ComponentListDiff) -> Unit
+    ) {
+        pendingDiff?.cancel()
+        val newList = newComponents.toList()
+        pendingDiff = launch {
+            var diff: ComponentListDiff
+            do {
+                val oldList = List(group.size) { group[it] }
+                diff = withContext(diffDispatcher) {
+                    ComponentListDiff.calculate(oldList, newList, keyProvider)
+                }
+            } while (!diff.matchesChildrenOf(group))
+            pendingDiff = null
+            applyDiff(diff)
+        }
+    }
+
+    /** Cancels the pending submission, if any. */
+    fun cancel() {
+        job.cancelChildren()
+        pendingDiff = null
+    }
+}
@@ -13,7 +13,8 @@ import android.view.ViewGroup
  *
  * This class will be instantiated by the [ComponentController] when needed, by calling the
  * no-arg constructor. Unfortunately, this means all subclasses must be visible from this package
- * and provide a no-arg constructor.
+ * and provide a no-arg constructor, unless a [ViewHolderFactory] is registered for them in
+ * [ViewHolderFactories], in which case the factory is used instead.
  */
 @Deprecated(
     message = "Bento is deprecated! Please consider using Jetpack Compose https://developer.android.com/jetpack/compose instead.",
@@ -45,6 +46,18 @@ abstract class ComponentViewHolder<P, T> {
      */
     abstract fun bind(presenter: P, element: T)
 
+    /**
+     * Called instead of [bind] when the item changed with one or more payloads, passed to
+     * [Component.notifyItemRangeChanged]. Override this to update only the views affected by the
+     * payloads, such as a counter, without redoing the whole bind. The default implementation
+     * binds the whole item.
+     *
+     * See [androidx.recyclerview.widget.RecyclerView.Adapter.onBindViewHolder]
+     */
+    open fun bind(presenter: P, element: T, payloads: List<@JvmSuppressWildcards Any>) {
+        bind(presenter, element)
+    }
+
     /**
      * Called when a view has been attached to a window.
      * See [android.support.v7.widget.RecyclerView.Adapter.onViewAttachedToWindow]
@@ -0,0 +1,73 @@
+package com.yelp.android.bento.core
+
+/**
+ * Decides which views a screen inflates ahead of time with the "BEST_GUESS" strategy. Every
+ * component gets at most [maxViewsPerComponent] views, as the views past the first screenful are
+ * mostly recycled rather than inflated, and the screen gets at most [maxViewsPerScreen]. Within
+ * those caps, the first view of each holder type the screen hasn't inflated yet is picked before
+ * more views of a type it already has.
+ *
+ * The budget can be used from any thread, and is [reset] when the screen is torn down.
+ */
+internal class InflationBudget(
+    private val maxViewsPerComponent: Int,
+    private val maxViewsPerScreen: Int
+) {
+
+    private val inflatedHolderTypes = HashSet<Class<out ComponentViewHolder<*, *>>>()
+
+    /** The number of views allocated since the budget was created or reset. */
+    var usedCount = 0
+        @Synchronized get
+        private set
+
+    /**
+     * Takes views for [component] out of the budget.
+     *
+     * @return The holder types to inflate, in the order of the component's positions.
+     */
+    @Synchronized
+    fun allocate(component: Component): List<Class<out ComponentViewHolder<*, *>>> {
+        val available = minOf(maxViewsPerComponent, maxViewsPerScreen - usedCount)
+        // The positions past the screen cap are too far down to be picked anyway.
+        val count = minOf(component.count, maxViewsPerScreen)
+        if (available <= 0 || count <= 0) {
+            return emptyList()
+        }
+
+        @Suppress("UNCHECKED_CAST")
+        val holderTypes = List(count) {
+            component.getHolderType(it) as Class<out ComponentViewHolder<*, *>>
+        }
+        val picked = BooleanArray(count)
+        var pickedCount = 0
+        // Pick the first view of each new holder type first, then the rest in order.
+        val newHolderTypes = HashSet<Class<out ComponentViewHolder<*, *>>>()
+        for (position in 0 until count) {
+            if (pickedCount == available) break
+            val holderType = holderTypes[position]
+            if (holderType !in inflatedHolderTypes && newHolderTypes.add(holderType)) {
+                picked[position] = true
+                pickedCount++
+            }
+        }
+        for (position in 0 until count) {
+            if (pickedCount == available) break
+            if (!picked[position]) {
+                picked[position] = true
+                pickedCount++
+            }
+        }
+
+        usedCount += pickedCount
+        inflatedHolderTypes.addAll(newHolderTypes)
+        return holderTypes.filterIndexed { position, _ -> picked[position] }
+    }
+
+    /** Gives the whole budget back, for a new screen. */
+    @Synchronized
+    fun reset() {
+        usedCount = 0
+        inflatedHolderTypes.clear()
+    }
+}
@@ -1,31 +1,336 @@
 package com.yelp.android.bento.core
 
-import kotlin.collections.LinkedHashMap
+import android.content.Context
+import android.content.pm.PackageManager
+import android.util.AtomicFile
+import android.util.Log
+import androidx.annotation.VisibleForTesting
+import com.yelp.android.bento.utils.BentoSettings
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.lang.reflect.Modifier
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+import java.util.concurrent.atomic.AtomicBoolean
 
 private const val CACHE_SIZE_LIMIT = 30
 
+private const val FILE_NAME = "bento_async_inflation_cache"
+
+// Bump when the file layout changes, so older files are ignored.
+private const val FORMAT_VERSION = 2
+
+// How long the first lookup waits for the stored cache to be read.
+private const val LOAD_TIMEOUT_MS = 50L
+
+// More view holders of one type than a screen could ever need.
+private const val MAX_COUNT = 1000
+
+// Changes are written at most this often.
+private const val WRITE_DELAY_MS = 1000L
+
 /**
- * Cache of how many of each view holder type's were actually inflated. This is a map of a name of
- * a screen, to map of ViewHolder type's to how many view holder type's were requested.
+ * Cache of how many of each view holder type were actually inflated, by the name of a screen. Each
+ * screen keeps a count per view holder type, in the order the screen first needed the types. The
+ * screens used least recently are evicted past [CACHE_SIZE_LIMIT]. The cache can be used from any
+ * thread.
+ *
+ * The cache is only kept in memory unless [enablePersistence] is called, in which case it is also
+ * kept in app storage so it's usually already filled on the first screen after a cold start.
  */
-object SmartAsyncInflationCache : LinkedHashMap<String, MutableList<Any>>() {
+object SmartAsyncInflationCache {
+
+    // In access order, so the eldest entry is the screen used least recently.
+    private val screens = object : LinkedHashMap<String, LinkedHashMap<Class<*>, Int>>(
+            16, 0.75f, true) {
+        override fun removeEldestEntry(
+            eldest: MutableMap.MutableEntry<String, LinkedHashMap<Class<*>, Int>>?
+        ): Boolean {
+            return size > CACHE_SIZE_LIMIT
+        }
+    }
+
+    private val executor = Executors.newSingleThreadScheduledExecutor { runnable ->
+        Thread(runnable, "BentoInflationCache").apply { isDaemon = true }
+    }
+
+    private var file: AtomicFile? = null
+    private var appVersion = 0L
+    private val writeScheduled = AtomicBoolean(false)
+
+    // The read of the stored cache, until the first lookup has waited for it.
+    @Volatile
+    private var pendingLoad: Future<*>? = null
+
+    /**
+     * Keeps the cache in the app's storage, so that it survives process restarts. The stored cache
+     * is read on a background thread. The first lookup waits for the read for at most
+     * [LOAD_TIMEOUT_MS], and if it takes longer, lookups only see the screens recorded since the
+     * process started until it's done. Call this early, such as when the app is created, so the
+     * stored cache is read before the first screen. Changes are written on a background thread as
+     * well.
+     *
+     * A cache stored by another install of the app is ignored, as the view holders it names may
+     * have been renamed, even by a build with the same version code.
+     */
+    @JvmStatic
+    fun enablePersistence(context: Context) {
+        synchronized(screens) {
+            if (file != null) return
+            val appVersion = try {
+                // Changes with every install or update of the app.
+                context.packageManager.getPackageInfo(context.packageName, 0).lastUpdateTime
+            } catch (exception: PackageManager.NameNotFoundException) {
+                logFailure("Failed to enable the async inflation cache persistence", exception)
+                return
+            }
+            val atomicFile = AtomicFile(File(context.filesDir, FILE_NAME))
+            file = atomicFile
+            this.appVersion = appVersion
+            val classLoader = context.classLoader
+            // Runs before any write, as both run in order on the same thread.
+            pendingLoad = executor.submit { load(atomicFile, appVersion, classLoader) }
+        }
+    }
+
+    /**
+     * @return The view holders the screen needed, with each type repeated as many times as it was
+     * needed and the types in the order the screen first needed them, or null if none were
+     * recorded. The list is a copy.
+     */
+    @Deprecated(
+            "Returns a copy of the counts expanded into a list. Use getDemand instead.",
+            ReplaceWith("getDemand(name)"))
+    operator fun get(name: String): MutableList<Any>? {
+        awaitLoad()
+        synchronized(screens) {
+            val counts = screens[name] ?: return null
+            val viewHolderTypes = ArrayList<Any>(counts.values.sum())
+            for ((viewHolderType, count) in counts) {
+                repeat(count) { viewHolderTypes.add(viewHolderType) }
+            }
+            return viewHolderTypes
+        }
+    }
+
+    /** @return True if view holders were recorded for the screen. */
+    fun containsKey(name: String): Boolean {
+        awaitLoad()
+        synchronized(screens) {
+            return screens.containsKey(name)
+        }
+    }
+
+    /** @return A snapshot of the view holders the screen needed, or null if none were recorded. */
+    fun getDemand(name: String): ViewHolderDemand? {
+        awaitLoad()
+        synchronized(screens) {
+            val counts = screens[name] ?: return null
+            return ViewHolderDemand(counts.keys.toList(), counts.values.toIntArray())
+        }
+    }
+
+    fun incrementForViewHolder(name: String, viewHolderType: Class<*>) {
+        synchronized(screens) {
+            val counts = getOrCreate(name)
+            // Capped like the stored counts, so they can always be read back.
+            counts[viewHolderType] = minOf((counts[viewHolderType] ?: 0) + 1, MAX_COUNT)
+            scheduleWrite()
+        }
+    }
+
+    fun incrementForViewHolderIfMissing(name: String, viewHolderType: Class<*>): Boolean {
+        synchronized(screens) {
+            val counts = getOrCreate(name)
+            if (counts.isNotEmpty() && !counts.containsKey(viewHolderType)) {
+                counts[viewHolderType] = 1
+                scheduleWrite()
+                return true // If it was empty, return true so we know to keep tracking this.
+            }
+            return false
+        }
+    }
 
-    fun incrementForViewHolder(name: String, viewHolderType: Any) {
-        getOrPut(name) { mutableListOf() }.add(viewHolderType)
+    private fun getOrCreate(name: String): LinkedHashMap<Class<*>, Int> {
+        return screens.getOrPut(name) { LinkedHashMap() }
     }
 
-    fun incrementForViewHolderIfMissing(name: String, viewHolderType: Any): Boolean {
-        val existingList = getOrPut(name) { mutableListOf() }
-        if (existingList.isNotEmpty() && !existingList.contains(viewHolderType)) {
-            existingList.add(viewHolderType)
-            return true // If it was empty, return true so we know to keep tracking this.
+    /** Waits a little for the stored cache to be read, on the first lookup only. */
+    private fun awaitLoad() {
+        val load = pendingLoad ?: return
+        pendingLoad = null
+        try {
+            load.get(LOAD_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+        } catch (exception: TimeoutException) {
+            logFailure("Timed out reading the async inflation cache", exception)
+        } catch (exception: ExecutionException) {
+            logFailure("Failed to read the async inflation cache", exception)
+        } catch (exception: InterruptedException) {
+            Thread.currentThread().interrupt()
         }
-        return false
     }
 
-    override fun removeEldestEntry(
-        eldest: MutableMap.MutableEntry<String, MutableList<Any>>?
-    ): Boolean {
-        return size > CACHE_SIZE_LIMIT
+    /**
+     * Reads the stored cache and merges it in. Screens recorded since the process started are
+     * newer than the stored ones, so they're kept and stay the most recently used.
+     */
+    private fun load(atomicFile: AtomicFile, appVersion: Int, classLoader: ClassLoader) {
+        val stored = read(atomicFile, appVersion, classLoader)
+        synchronized(screens) {
+            val recorded = LinkedHashMap(screens)
+            screens.clear()
+            screens.putAll(stored)
+            screens.putAll(recorded)
+        }
+    }
+
+    private fun scheduleWrite() {
+        if (file != null && writeScheduled.compareAndSet(false, true)) {
+            executor.schedule(Runnable { write() }, WRITE_DELAY_MS, TimeUnit.MILLISECONDS)
+        }
+    }
+
+    private fun write() {
+        writeScheduled.set(false)
+        val (atomicFile, snapshot) = synchronized(screens) {
+            file to screens.map { (name, counts) -> name to counts.toList() }
+        }
+        write(atomicFile ?: return, appVersion, snapshot)
+    }
+
+    /** Stores the screens, with the view holder counts of each screen in order. */
+    @VisibleForTesting
+    internal fun write(
+        atomicFile: AtomicFile,
+        appVersion: Long,
+        snapshot: List<Pair<String, List<Pair<Class<*>, Int>>>>
+    ) {
+        var stream: FileOutputStream? = null
+        try {
+            stream = atomicFile.startWrite()
+            val output = DataOutputStream(stream.buffered())
+            output.writeInt(FORMAT_VERSION)
+            output.writeLong(appVersion)
+            output.writeInt(snapshot.size)
+            for ((name, counts) in snapshot) {
+                output.writeUTF(name)
+                output.writeInt(counts.size)
+                for ((viewHolderType, count) in counts) {
+                    output.writeUTF(viewHolderType.name)
+                    output.writeInt(count)
+                }
+            }
+            output.flush()
+            atomicFile.finishWrite(stream)
+        } catch (exception: IOException) {
+            logFailure("Failed to write the async inflation cache", exception)
+            stream?.let { atomicFile.failWrite(it) }
+        }
+    }
+
+    /**
+     * Reads the stored cache. Classes that no longer exist or can no longer be instantiated as view
+     * holders are left out, as are counts out of range, and a cache that can't be read is deleted.
+     */
+    @VisibleForTesting
+    internal fun read(
+        atomicFile: AtomicFile,
+        appVersion: Long,
+        classLoader: ClassLoader
+    ): Map<String, LinkedHashMap<Class<*>, Int>> {
+        if (!atomicFile.baseFile.exists()) {
+            return emptyMap()
+        }
+        val cache = LinkedHashMap<String, LinkedHashMap<Class<*>, Int>>()
+        try {
+            DataInputStream(atomicFile.openRead().buffered()).use { input ->
+                if (input.readInt() != FORMAT_VERSION || input.readLong() != appVersion) {
+                    return emptyMap()
+                }
+                repeat(input.readInt()) {
+                    val name = input.readUTF()
+                    val counts = LinkedHashMap<Class<*>, Int>()
+                    repeat(input.readInt()) {
+                        val viewHolderType = loadViewHolderType(input.readUTF(), classLoader)
+                        val count = input.readInt()
+                        if (viewHolderType != null && count in 1..MAX_COUNT) {
+                            counts[viewHolderType] =
+                                    minOf((counts[viewHolderType] ?: 0) + count, MAX_COUNT)
+                        }
+                    }
+                    if (counts.isNotEmpty()) {
+                        cache[name] = counts
+                    }
+                }
+            }
+        } catch (exception: IOException) {
+            logFailure("Failed to read the async inflation cache", exception)
+            atomicFile.delete()
+            return emptyMap()
+        }
+        return cache
+    }
+
+    private fun loadViewHolderType(className: String, classLoader: ClassLoader): Class<*>? {
+        return try {
+            Class.forName(className, false, classLoader).takeIf {
+                ComponentViewHolder::class.java.isAssignableFrom(it) &&
+                        !it.isInterface && !Modifier.isAbstract(it.modifiers)
+            }
+        } catch (exception: ClassNotFoundException) {
+            null // Renamed or removed since the cache was written.
+        } catch (error: LinkageError) {
+            null // Depends on classes that changed since the cache was written.
+        }
+    }
+
+    private fun logFailure(message: String, exception: Throwable) {
+        if (BentoSettings.loggingEnabled) {
+            Log.w(BentoSettings.BENTO_TAG, message, exception)
+        }
+    }
+}
+
+/**
+ * The view holders a screen needed: the view holder types in the order the screen first needed
+ * them, and how many of each type it needed.
+ */
+class ViewHolderDemand internal constructor(
+    val viewHolderTypes: List<Class<*>>,
+    private val counts: IntArray
+) {
+
+    /** The total number of view holders needed. */
+    val totalCount = counts.sum()
+
+    // Indices into viewHolderTypes, the most needed type first. Sorting is stable, so types needed
+    // equally often keep the order the screen first needed them in.
+    private val demandOrder = counts.indices.sortedByDescending { counts[it] }
+
+    /** @return How many view holders of the type at [index] in [viewHolderTypes] were needed. */
+    fun countOf(index: Int) = counts[index]
+
+    /**
+     * @return The view holders from [fromIndex] (inclusive) to [toIndex] (exclusive) by demand,
+     * where each type is repeated as many times as it was needed and the most needed types come
+     * first. A slice from 0 holds the top types by demand.
+     */
+    fun slice(fromIndex: Int, toIndex: Int): List<Class<*>> {
+        val slice = ArrayList<Class<*>>(maxOf(toIndex - fromIndex, 0))
+        var start = 0
+        for (index in demandOrder) {
+            val end = start + counts[index]
+            for (i in maxOf(start, fromIndex) until minOf(end, toIndex)) {
+                slice.add(viewHolderTypes[index])
+            }
+            start = end
+        }
+        return slice
     }
 }
@@ -0,0 +1,17 @@
+package com.yelp.android.bento.core;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Creates instances of a {@link ComponentViewHolder} class without reflection. Register one for a
+ * holder class with {@link ViewHolderFactories#register(Class, ViewHolderFactory)}, usually as a
+ * constructor reference such as {@code MyViewHolder::new}.
+ *
+ * @param <T> The type of view holder created.
+ */
+public interface ViewHolderFactory<T extends ComponentViewHolder> {
+
+    /** @return A new view holder. May be called from a background thread. */
+    @NonNull
+    T create();
+}
@@ -3,6 +3,8 @@ package com.yelp.android.bento.core;
 
 import android.view.View;
 
+import java.util.List;
+
 import androidx.recyclerview.widget.RecyclerView;
 
 /**
@@ -26,6 +28,11 @@ public class ViewHolderWrapper<P, T> extends RecyclerView.ViewHolder {
         mViewHolder.bind(presenter, element);
     }
 
+    public void bind(P presenter, int position, T element, List<Object> payloads) {
+        mViewHolder.setAbsolutePosition(position);
+        mViewHolder.bind(presenter, element, payloads);
+    }
+
     public void onViewRecycled() {
         mViewHolder.onViewRecycled();
     }
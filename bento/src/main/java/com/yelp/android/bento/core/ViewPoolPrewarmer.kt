@@ -0,0 +1,67 @@
+package com.yelp.android.bento.core
+
+import android.view.View
+import android.view.ViewGroup
+import com.yelp.android.bento.componentcontrollers.RecyclerViewComponentController.constructViewHolder
+import com.yelp.android.bento.utils.BentoSettings
+import com.yelp.android.bento.utils.doOnLifecycleDestroy
+import kotlin.coroutines.CoroutineContext
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancelChildren
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+
+/**
+ * Creates and inflates view holders on background threads ahead of time, and hands each one back
+ * on the main thread so it can be put in a RecyclerView's pool. Unlike the views kept by
+ * [AsyncInflationBridge], pooled view holders reach the RecyclerView through its normal reuse
+ * path, whenever their view type first shows up.
+ *
+ * The views are speculative, so they're inflated after the ones needed for the screen, and the
+ * inflations still pending are cancelled when the screen is destroyed.
+ */
+internal class ViewPoolPrewarmer @JvmOverloads constructor(
+    private val parent: ViewGroup,
+    private val inflaterDispatcher: CoroutineDispatcher =
+            BentoSettings.inflationScheduler.dispatcher(InflationPriority.SPECULATIVE)
+) : CoroutineScope {
+
+    private val job = SupervisorJob()
+    override val coroutineContext: CoroutineContext = job + Dispatchers.Main
+
+    init {
+        parent.doOnLifecycleDestroy { job.cancelChildren() }
+    }
+
+    /**
+     * Inflates [count] view holders of [holderType] and calls [onInflated] on the main thread for
+     * each of them. The inflations still pending are cancelled once [onInflated] returns false,
+     * such as when the pool is full.
+     */
+    @Suppress("UNCHECKED_CAST")
+    fun prewarm(
+        holderType: Class<*>, // Class<out ComponentViewHolder<*, *>> doesn't work with Java.
+        count: Int,
+        onInflated: (ComponentViewHolder<*, *>, View) -> Boolean
+    ) {
+        val prewarmJob = Job(job)
+        repeat(count) {
+            launch(prewarmJob + inflaterDispatcher) {
+                val viewHolder: ComponentViewHolder<*, *> =
+                        constructViewHolder(holderType as Class<out ComponentViewHolder<*, *>>)
+                val (_, view) =
+                        BentoAsyncLayoutInflater.inflate(viewHolder, parent, inflaterDispatcher)
+                withContext(Dispatchers.Main) {
+                    if (prewarmJob.isActive && !onInflated(viewHolder, view)) {
+                        prewarmJob.cancel()
+                    }
+                }
+            }
+        }
+        prewarmJob.complete()
+    }
+}
@@ -0,0 +1,126 @@
+package com.yelp.android.bento.core;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Process-wide registry of the view types used for {@link ComponentViewHolder} classes. Each holder
+ * class gets a dense view type, allocated in the order the classes are first seen and never reused,
+ * so the same holder class has the same view type in every controller and {@link
+ * androidx.recyclerview.widget.RecyclerView.RecycledViewPool} shared between them.
+ *
+ * <p>Lookups in either direction are lock-free and don't allocate. Registering a new holder class
+ * copies the tables, which only happens once per class.
+ */
+public final class ViewTypeRegistry {
+
+    private static final int INITIAL_CAPACITY = 32;
+
+    private static final Object sLock = new Object();
+    private static volatile Table sTable = new Table(INITIAL_CAPACITY);
+
+    private ViewTypeRegistry() {}
+
+    /**
+     * @return The view type of the provided holder class, registering the class if it's the first
+     *     time it's seen.
+     */
+    public static int getViewType(@NonNull Class<? extends ComponentViewHolder> holderType) {
+        int viewType = sTable.viewTypeOf(holderType);
+        return viewType != Table.NO_VIEW_TYPE ? viewType : register(holderType);
+    }
+
+    /**
+     * @return The holder class registered for the provided view type.
+     * @throws IllegalArgumentException if no holder class has this view type.
+     */
+    @NonNull
+    @SuppressWarnings("unchecked") // Only holder classes are registered.
+    public static Class<? extends ComponentViewHolder> getHolderType(int viewType) {
+        Table table = sTable;
+        if (viewType < 0 || viewType >= table.mSize) {
+            throw new IllegalArgumentException("Unknown view type: " + viewType);
+        }
+        return (Class<? extends ComponentViewHolder>) table.mHolderTypes[viewType];
+    }
+
+    private static int register(@NonNull Class<? extends ComponentViewHolder> holderType) {
+        synchronized (sLock) {
+            Table table = sTable;
+            int viewType = table.viewTypeOf(holderType);
+            if (viewType == Table.NO_VIEW_TYPE) {
+                viewType = table.mSize;
+                sTable = table.plus(holderType);
+            }
+            return viewType;
+        }
+    }
+
+    /**
+     * An immutable snapshot of the registry. Holder classes are found by an open addressing hash
+     * table over their identity hash codes, and view types index directly into an array.
+     */
+    private static final class Table {
+
+        private static final int NO_VIEW_TYPE = -1;
+
+        /** Holder classes by view type. */
+        private final Class<?>[] mHolderTypes;
+
+        /** The open addressing table, with the view type of each key in the same slot. */
+        private final Class<?>[] mKeys;
+
+        private final int[] mViewTypes;
+        private final int mSize;
+
+        private Table(int capacity) {
+            mHolderTypes = new Class<?>[capacity];
+            mKeys = new Class<?>[capacity * 2];
+            mViewTypes = new int[capacity * 2];
+            mSize = 0;
+        }
+
+        private Table(@NonNull Table table, @NonNull Class<?> holderType) {
+            int capacity = table.mSize < table.mHolderTypes.length
+                    ? table.mHolderTypes.length
+                    : table.mHolderTypes.length * 2;
+            mHolderTypes = new Class<?>[capacity];
+            System.arraycopy(table.mHolderTypes, 0, mHolderTypes, 0, table.mSize);
+            mHolderTypes[table.mSize] = holderType;
+            mSize = table.mSize + 1;
+
+            // At most half full, so probing always ends on an empty slot.
+            mKeys = new Class<?>[capacity * 2];
+            mViewTypes = new int[capacity * 2];
+            for (int viewType = 0; viewType < mSize; viewType++) {
+                int slot = slotOf(mHolderTypes[viewType]);
+                while (mKeys[slot] != null) {
+                    slot = (slot + 1) & (mKeys.length - 1);
+                }
+                mKeys[slot] = mHolderTypes[viewType];
+                mViewTypes[slot] = viewType;
+            }
+        }
+
+        @NonNull
+        private Table plus(@NonNull Class<?> holderType) {
+            return new Table(this, holderType);
+        }
+
+        private int viewTypeOf(@NonNull Class<?> holderType) {
+            for (int slot = slotOf(holderType); ; slot = (slot + 1) & (mKeys.length - 1)) {
+                Class<?> key = mKeys[slot];
+                if (key == holderType) {
+                    return mViewTypes[slot];
+                } else if (key == null) {
+                    return NO_VIEW_TYPE;
+                }
+            }
+        }
+
+        private int slotOf(@NonNull Class<?> holderType) {
+            int hash = System.identityHashCode(holderType);
+            // Spread the high bits, as identity hash codes tend to vary little in the low ones.
+            return (hash ^ (hash >>> 16)) & (mKeys.length - 1);
+        }
+    }
+}
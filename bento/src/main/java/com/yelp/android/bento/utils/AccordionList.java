@@ -3,10 +3,7 @@ package com.yelp.android.bento.utils;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import com.yelp.android.bento.utils.AccordionList.RangedValue;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Iterator;
-import java.util.List;
 import java.util.NoSuchElementException;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
@@ -15,10 +12,26 @@ import org.apache.commons.lang3.builder.HashCodeBuilder;
  * A continuous ordered list of sized entries that starts from zero and keeps track of the range
  * that each entry occupies across additions, updates, and removals. Queries look up the entry
  * associated with the range.
+ *
+ * <p>Entries are stored in an implicit treap where every node knows how many entries and how many
+ * positions its subtree covers. Ranges are therefore never stored explicitly: inserting, resizing
+ * or removing an entry only updates the nodes on the path to it, and position lookups descend the
+ * tree. All of these operations are O(log n) and, apart from the node created by an insertion, do
+ * not allocate.
  */
 public class AccordionList<T> implements Iterable<RangedValue<T>> {
 
-    private List<RangedValue<T>> mRangeList = new ArrayList<>();
+    @Nullable private Entry<T> mRoot;
+
+    /** Incremented on every structural or size change so stale cursors can be detected. */
+    private int mModCount;
+
+    /** State of the xorshift generator used to pick node priorities. */
+    private int mPrioritySeed = 0x2545F491;
+
+    // Results of the last split. Kept as fields so splitting does not allocate.
+    @Nullable private Entry<T> mSplitLeft;
+    @Nullable private Entry<T> mSplitRight;
 
     /** Returns an iterator for the AccordionList. Not concurrent modification safe. */
     @NonNull
@@ -29,7 +42,11 @@ public class AccordionList<T> implements Iterable<RangedValue<T>> {
 
     @Override
     public int hashCode() {
-        return new HashCodeBuilder().append(mRangeList).toHashCode();
+        HashCodeBuilder builder = new HashCodeBuilder();
+        for (RangedValue<T> rangedValue : this) {
+            builder.append(rangedValue);
+        }
+        return builder.toHashCode();
     }
 
     @Override
@@ -48,37 +65,158 @@ public class AccordionList<T> implements Iterable<RangedValue<T>> {
 
         AccordionList that = (AccordionList) object;
 
-        return new EqualsBuilder().append(this.mRangeList, that.mRangeList).isEquals();
+        if (this.size() != that.size()) {
+            return false;
+        }
+
+        EqualsBuilder builder = new EqualsBuilder();
+        for (int i = 0; i < size(); i++) {
+            builder.append(this.get(i), that.get(i));
+        }
+        return builder.isEquals();
     }
 
     /** Returns the value associated with the range this location belongs to. */
     @NonNull
     public T valueAt(int location) {
-        return rangedValueAt(location).mValue;
+        Entry<T> node = mRoot;
+        int remaining = location;
+        while (node != null && remaining >= 0) {
+            int leftSpan = span(node.mLeft);
+            if (remaining < leftSpan) {
+                node = node.mLeft;
+                continue;
+            }
+
+            remaining -= leftSpan;
+            if (remaining < node.mSize) {
+                return node.mValue;
+            }
+
+            remaining -= node.mSize;
+            node = node.mRight;
+        }
+
+        throw outOfBounds(location);
     }
 
     /** Returns the range and its associated value that this location belongs to. */
     @NonNull
     public RangedValue<T> rangedValueAt(int location) {
-        int foundLocation = Collections.binarySearch(mRangeList, location);
+        Cursor<T> cursor = new Cursor<>();
+        locate(location, cursor);
+        return new RangedValue<>(cursor.mValue, new Range(cursor.mLower, cursor.mUpper));
+    }
 
-        if (foundLocation < 0) {
-            throw new ArrayIndexOutOfBoundsException(
-                    "Could not find value at index: "
-                            + location
-                            + ".\n"
-                            + "BinarySearch returned: "
-                            + foundLocation
-                            + ".\n"
-                            + describeAccordionList());
+    /**
+     * Resolves the entry that this location belongs to into the provided {@link Cursor}, which
+     * then holds the entry index, its value, its bounds and the offset of the location within the
+     * entry. Unlike {@link #rangedValueAt(int)} this does not allocate, so callers on hot paths
+     * should reuse a single cursor across lookups.
+     *
+     * @param location The location to look up.
+     * @param cursor The cursor to fill in.
+     * @throws ArrayIndexOutOfBoundsException if no entry contains the location.
+     */
+    public void locate(int location, @NonNull Cursor<T> cursor) {
+        Entry<T> node = mRoot;
+        int entryIndex = 0;
+        int lower = 0;
+        int remaining = location;
+        while (node != null && remaining >= 0) {
+            int leftSpan = span(node.mLeft);
+            if (remaining < leftSpan) {
+                node = node.mLeft;
+                continue;
+            }
+
+            remaining -= leftSpan;
+            lower += leftSpan;
+            entryIndex += count(node.mLeft);
+            if (remaining < node.mSize) {
+                cursor.set(entryIndex, node, lower, lower + node.mSize, remaining, mModCount);
+                return;
+            }
+
+            remaining -= node.mSize;
+            lower += node.mSize;
+            entryIndex++;
+            node = node.mRight;
+        }
+
+        throw outOfBounds(location);
+    }
+
+    /**
+     * Moves a cursor previously filled by {@link #locate(int, Cursor)} to the following entry in
+     * constant time. The cursor's offset is reset to zero.
+     *
+     * @return False if there is no following entry or the list changed since the cursor was
+     *     filled, in which case the cursor is left untouched.
+     */
+    public boolean moveToNext(@NonNull Cursor<T> cursor) {
+        if (!isCurrent(cursor) || cursor.mNode.mNext == null) {
+            return false;
         }
-        return mRangeList.get(foundLocation);
+
+        Entry<T> next = cursor.mNode.mNext;
+        cursor.set(
+                cursor.mEntryIndex + 1,
+                next,
+                cursor.mUpper,
+                cursor.mUpper + next.mSize,
+                0,
+                mModCount);
+        return true;
+    }
+
+    /**
+     * Moves a cursor previously filled by {@link #locate(int, Cursor)} to the preceding entry in
+     * constant time. The cursor's offset is reset to zero.
+     *
+     * @return False if there is no preceding entry or the list changed since the cursor was
+     *     filled, in which case the cursor is left untouched.
+     */
+    public boolean moveToPrevious(@NonNull Cursor<T> cursor) {
+        if (!isCurrent(cursor) || cursor.mNode.mPrev == null) {
+            return false;
+        }
+
+        Entry<T> previous = cursor.mNode.mPrev;
+        cursor.set(
+                cursor.mEntryIndex - 1,
+                previous,
+                cursor.mLower - previous.mSize,
+                cursor.mLower,
+                0,
+                mModCount);
+        return true;
     }
 
     /** Returns the indexed range and its associated value. */
     @NonNull
     public RangedValue<T> get(int entryIndex) {
-        return mRangeList.get(entryIndex);
+        checkEntryIndex(entryIndex, size());
+
+        Entry<T> node = mRoot;
+        int lower = 0;
+        int remaining = entryIndex;
+        while (true) {
+            int leftCount = count(node.mLeft);
+            if (remaining < leftCount) {
+                node = node.mLeft;
+                continue;
+            }
+
+            lower += span(node.mLeft);
+            if (remaining == leftCount) {
+                return new RangedValue<>(node.mValue, new Range(lower, lower + node.mSize));
+            }
+
+            remaining -= leftCount + 1;
+            lower += node.mSize;
+            node = node.mRight;
+        }
     }
 
     /**
@@ -87,17 +225,21 @@ public class AccordionList<T> implements Iterable<RangedValue<T>> {
      */
     @NonNull
     public Range span() {
-        return new Range(
-                0, mRangeList.isEmpty() ? 0 : mRangeList.get(mRangeList.size() - 1).mRange.mUpper);
+        return new Range(0, spanSize());
+    }
+
+    /** Returns the sum of all entry sizes without allocating a {@link Range}. */
+    public int spanSize() {
+        return span(mRoot);
     }
 
     /** Returns the number of entries in the {@link AccordionList}. */
     public int size() {
-        return mRangeList.size();
+        return count(mRoot);
     }
 
     public boolean isEmpty() {
-        return mRangeList.isEmpty();
+        return mRoot == null;
     }
 
     /**
@@ -105,9 +247,11 @@ public class AccordionList<T> implements Iterable<RangedValue<T>> {
      *
      * @param value Value to append
      * @param size Size to associate with the value. Cannot be negative.
+     * @return A handle to the new entry, which can be used to find its position later.
      */
-    public void add(@NonNull T value, int size) {
-        add(mRangeList.size(), value, size);
+    @NonNull
+    public Entry<T> add(@NonNull T value, int size) {
+        return add(size(), value, size);
     }
 
     /**
@@ -116,20 +260,49 @@ public class AccordionList<T> implements Iterable<RangedValue<T>> {
      * @param entryIndex Position to insert
      * @param value Value to insert
      * @param size Size to associate with the value. Cannot be negative.
+     * @return A handle to the new entry, which can be used to find its position later.
      */
-    public void add(int entryIndex, @NonNull T value, int size) {
+    @NonNull
+    public Entry<T> add(int entryIndex, @NonNull T value, int size) {
         if (size < 0) {
             throw new IllegalArgumentException("Size cannot be negative.");
         }
+        checkEntryIndex(entryIndex, size() + 1);
+
+        Entry<T> node = new Entry<>(value, size, nextPriority());
+        Entry<T> next = entryIndex < size() ? nodeAt(entryIndex) : null;
+        Entry<T> previous = entryIndex == 0 ? null : nodeAt(entryIndex - 1);
+        node.mPrev = previous;
+        node.mNext = next;
+        if (previous != null) {
+            previous.mNext = node;
+        }
+        if (next != null) {
+            next.mPrev = node;
+        }
 
-        int sizeAtPosition = entryIndex == 0 ? 0 : mRangeList.get(entryIndex - 1).mRange.mUpper;
-        mRangeList.add(
-                entryIndex,
-                new RangedValue<T>(value, new Range(sizeAtPosition, sizeAtPosition + size)));
-        // Update following sections.
-        for (int i = entryIndex + 1; i < mRangeList.size(); i++) {
-            mRangeList.set(i, mRangeList.get(i).offset(size));
+        setRoot(insert(mRoot, entryIndex, node));
+        mModCount++;
+        return node;
+    }
+
+    /**
+     * Finds the current position of an entry by walking from it up to the root, in O(log n).
+     *
+     * @param entry A handle returned by {@link #add(int, Object, int)}.
+     * @return The index of the entry, or -1 if it has been removed from this list.
+     */
+    public int indexOf(@NonNull Entry<T> entry) {
+        int entryIndex = count(entry.mLeft);
+        Entry<T> node = entry;
+        while (node.mParent != null) {
+            Entry<T> parent = node.mParent;
+            if (parent.mRight == node) {
+                entryIndex += count(parent.mLeft) + 1;
+            }
+            node = parent;
         }
+        return node == mRoot ? entryIndex : -1;
     }
 
     public void addAll(@NonNull AccordionList<T> values) {
@@ -149,48 +322,256 @@ public class AccordionList<T> implements Iterable<RangedValue<T>> {
         if (size < 0) {
             throw new IllegalArgumentException("Size cannot be negative.");
         }
+        checkEntryIndex(entryIndex, size());
 
-        int sizeAtPosition = entryIndex == 0 ? 0 : mRangeList.get(entryIndex - 1).mRange.mUpper;
-        int offset = size - mRangeList.get(entryIndex).mRange.getSize();
-        mRangeList.set(
-                entryIndex,
-                new RangedValue<T>(value, new Range(sizeAtPosition, sizeAtPosition + size)));
-        // Update following sections.
-        for (int i = entryIndex + 1; i < mRangeList.size(); i++) {
-            mRangeList.set(i, mRangeList.get(i).offset(offset));
-        }
+        update(mRoot, entryIndex, value, size);
+        mModCount++;
     }
 
     public void clear() {
-        mRangeList.clear();
+        setRoot(null);
+        mModCount++;
     }
 
     public void remove(int entryIndex) {
-        int offset = -mRangeList.get(entryIndex).mRange.getSize();
-        mRangeList.remove(entryIndex);
-        // Update following sections.
-        for (int i = entryIndex; i < mRangeList.size(); i++) {
-            mRangeList.set(i, mRangeList.get(i).offset(offset));
-        }
+        checkEntryIndex(entryIndex, size());
+
+        setRoot(remove(mRoot, entryIndex));
+        mModCount++;
+    }
+
+    private ArrayIndexOutOfBoundsException outOfBounds(int location) {
+        return new ArrayIndexOutOfBoundsException(
+                "Could not find value at index: " + location + ".\n" + describeAccordionList());
     }
 
     private String describeAccordionList() {
         StringBuilder builder = new StringBuilder();
         builder.append("AccordionList has size: ")
-                .append(mRangeList.size())
+                .append(size())
                 .append(". /n")
                 .append("Items in AccordionList:\n");
 
-        for (RangedValue<T> range : mRangeList) {
+        for (RangedValue<T> range : this) {
             builder.append(range.toString());
         }
 
         return builder.toString();
     }
 
+    private static void checkEntryIndex(int entryIndex, int bound) {
+        if (entryIndex < 0 || entryIndex >= bound) {
+            throw new IndexOutOfBoundsException(
+                    "Index: " + entryIndex + ", Size: " + Math.max(bound, 0));
+        }
+    }
+
+    private boolean isCurrent(@NonNull Cursor<T> cursor) {
+        return cursor.mNode != null && cursor.mModCount == mModCount;
+    }
+
+    @NonNull
+    private Entry<T> nodeAt(int entryIndex) {
+        Entry<T> node = mRoot;
+        int remaining = entryIndex;
+        while (true) {
+            int leftCount = count(node.mLeft);
+            if (remaining < leftCount) {
+                node = node.mLeft;
+            } else if (remaining == leftCount) {
+                return node;
+            } else {
+                remaining -= leftCount + 1;
+                node = node.mRight;
+            }
+        }
+    }
+
+    private int nextPriority() {
+        int seed = mPrioritySeed;
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        mPrioritySeed = seed;
+        return seed;
+    }
+
+    private static int count(@Nullable Entry<?> node) {
+        return node == null ? 0 : node.mCount;
+    }
+
+    private static int span(@Nullable Entry<?> node) {
+        return node == null ? 0 : node.mSpan;
+    }
+
+    /** Recomputes the aggregated count and span of a node from its children and adopts them. */
+    private static <T> void refresh(@NonNull Entry<T> node) {
+        node.mCount = count(node.mLeft) + 1 + count(node.mRight);
+        node.mSpan = span(node.mLeft) + node.mSize + span(node.mRight);
+        if (node.mLeft != null) {
+            node.mLeft.mParent = node;
+        }
+        if (node.mRight != null) {
+            node.mRight.mParent = node;
+        }
+    }
+
+    /** Sets the root of the tree after a structural change. */
+    private void setRoot(@Nullable Entry<T> root) {
+        mRoot = root;
+        if (root != null) {
+            root.mParent = null;
+        }
+    }
+
+    /**
+     * Splits the tree rooted at the provided node so that the first {@code entryCount} entries end
+     * up in {@link #mSplitLeft} and the remaining ones in {@link #mSplitRight}.
+     */
+    private void split(@Nullable Entry<T> node, int entryCount) {
+        if (node == null) {
+            mSplitLeft = null;
+            mSplitRight = null;
+            return;
+        }
+
+        int leftCount = count(node.mLeft);
+        if (leftCount < entryCount) {
+            split(node.mRight, entryCount - leftCount - 1);
+            node.mRight = mSplitLeft;
+            refresh(node);
+            mSplitLeft = node;
+        } else {
+            split(node.mLeft, entryCount);
+            node.mLeft = mSplitRight;
+            refresh(node);
+            mSplitRight = node;
+        }
+    }
+
+    /** Joins two trees where every entry of {@code left} comes before those of {@code right}. */
+    @Nullable
+    private static <T> Entry<T> merge(@Nullable Entry<T> left, @Nullable Entry<T> right) {
+        if (left == null) {
+            return right;
+        } else if (right == null) {
+            return left;
+        }
+
+        if (left.mPriority > right.mPriority) {
+            left.mRight = merge(left.mRight, right);
+            refresh(left);
+            return left;
+        } else {
+            right.mLeft = merge(left, right.mLeft);
+            refresh(right);
+            return right;
+        }
+    }
+
+    @NonNull
+    private Entry<T> insert(@Nullable Entry<T> node, int entryIndex, @NonNull Entry<T> newNode) {
+        if (node == null) {
+            return newNode;
+        }
+
+        if (newNode.mPriority > node.mPriority) {
+            split(node, entryIndex);
+            newNode.mLeft = mSplitLeft;
+            newNode.mRight = mSplitRight;
+            mSplitLeft = null;
+            mSplitRight = null;
+            refresh(newNode);
+            return newNode;
+        }
+
+        int leftCount = count(node.mLeft);
+        if (entryIndex <= leftCount) {
+            node.mLeft = insert(node.mLeft, entryIndex, newNode);
+        } else {
+            node.mRight = insert(node.mRight, entryIndex - leftCount - 1, newNode);
+        }
+        refresh(node);
+        return node;
+    }
+
+    private static <T> void update(@NonNull Entry<T> node, int entryIndex, T value, int size) {
+        int leftCount = count(node.mLeft);
+        if (entryIndex < leftCount) {
+            update(node.mLeft, entryIndex, value, size);
+        } else if (entryIndex > leftCount) {
+            update(node.mRight, entryIndex - leftCount - 1, value, size);
+        } else {
+            node.mValue = value;
+            node.mSize = size;
+        }
+        refresh(node);
+    }
+
+    @Nullable
+    private static <T> Entry<T> remove(@NonNull Entry<T> node, int entryIndex) {
+        int leftCount = count(node.mLeft);
+        if (entryIndex == leftCount) {
+            if (node.mPrev != null) {
+                node.mPrev.mNext = node.mNext;
+            }
+            if (node.mNext != null) {
+                node.mNext.mPrev = node.mPrev;
+            }
+            node.mParent = null;
+            return merge(node.mLeft, node.mRight);
+        }
+
+        if (entryIndex < leftCount) {
+            node.mLeft = remove(node.mLeft, entryIndex);
+        } else {
+            node.mRight = remove(node.mRight, entryIndex - leftCount - 1);
+        }
+        refresh(node);
+        return node;
+    }
+
+    /**
+     * An entry of the list, which is also a node of the implicit treap. Its position in the list is
+     * given by the number of entries before it in an in-order traversal, and its range by the sizes
+     * of those entries.
+     *
+     * <p>Returned by {@link #add(int, Object, int)} as an opaque handle that keeps identifying the
+     * entry while other entries are added and removed. See {@link #indexOf(Entry)}.
+     */
+    public static final class Entry<T> {
+
+        private T mValue;
+        private int mSize;
+        private final int mPriority;
+
+        /** The number of entries in the subtree rooted at this node. */
+        private int mCount = 1;
+
+        /** The sum of the entry sizes in the subtree rooted at this node. */
+        private int mSpan;
+
+        @Nullable private Entry<T> mLeft;
+        @Nullable private Entry<T> mRight;
+
+        /** The node this one is a child of, or null for the root and removed entries. */
+        @Nullable private Entry<T> mParent;
+
+        // In-order neighbours, so cursors can step between entries without searching.
+        @Nullable private Entry<T> mPrev;
+        @Nullable private Entry<T> mNext;
+
+        private Entry(T value, int size, int priority) {
+            mValue = value;
+            mSize = size;
+            mSpan = size;
+            mPriority = priority;
+        }
+    }
+
     private class AccordionListIterator implements Iterator<RangedValue<T>> {
 
-        private int mRemaining = mRangeList.size();
+        private int mRemaining = size();
         private int removalIndex = -1;
 
         @Override
@@ -206,7 +587,7 @@ public class AccordionList<T> implements Iterable<RangedValue<T>> {
             }
 
             mRemaining--;
-            return mRangeList.get(removalIndex = mRangeList.size() - 1 - mRemaining);
+            return get(removalIndex = size() - 1 - mRemaining);
         }
 
         @Override
@@ -220,6 +601,57 @@ public class AccordionList<T> implements Iterable<RangedValue<T>> {
         }
     }
 
+    /**
+     * Mutable result of {@link #locate(int, Cursor)}. Describes the entry that a location belongs
+     * to and where the location falls within it. The fields are only meaningful after a
+     * successful lookup and are overwritten by the next one.
+     *
+     * @param <V> The type of value
+     */
+    public static final class Cursor<V> {
+
+        /** The index of the entry in the {@link AccordionList}. */
+        public int mEntryIndex = -1;
+
+        /** The value of the entry. */
+        @Nullable public V mValue;
+
+        /** The lower endpoint (inclusive) of the entry's range. */
+        public int mLower;
+
+        /** The upper endpoint (exclusive) of the entry's range. */
+        public int mUpper;
+
+        /** The offset of the looked up location from {@link #mLower}. */
+        public int mOffset;
+
+        @Nullable private Entry<V> mNode;
+        private int mModCount;
+
+        /** @return True if the last resolved entry also contains the provided location. */
+        public boolean contains(int location) {
+            return mEntryIndex >= 0 && location >= mLower && location < mUpper;
+        }
+
+        /** Forgets the last resolved entry. */
+        public void reset() {
+            mEntryIndex = -1;
+            mValue = null;
+            mNode = null;
+        }
+
+        private void set(
+                int entryIndex, Entry<V> node, int lower, int upper, int offset, int modCount) {
+            mEntryIndex = entryIndex;
+            mValue = node.mValue;
+            mNode = node;
+            mLower = lower;
+            mUpper = upper;
+            mOffset = offset;
+            mModCount = modCount;
+        }
+    }
+
     /**
      * Immutable class for describing the range of two numeric values.
      *
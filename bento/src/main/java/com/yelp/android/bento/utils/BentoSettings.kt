@@ -1,5 +1,8 @@
 package com.yelp.android.bento.utils
 
+import com.yelp.android.bento.core.BentoInflationScheduler
+import com.yelp.android.bento.core.BentoViewPoolManager
+
 object BentoSettings {
 
     const val BENTO_TAG = "bento"
@@ -13,4 +16,35 @@ object BentoSettings {
     @JvmStatic var asyncInflationEnabled = false
 
     @JvmStatic var loggingEnabled = false
+
+    /**
+     * The most views the "BEST_GUESS" async inflation strategy inflates ahead of time for a single
+     * component. Past the first screenful, views are mostly recycled rather than inflated. Applies
+     * to controllers created from now on.
+     */
+    @JvmStatic var asyncInflationMaxViewsPerComponent = 10
+
+    /**
+     * The most views the "BEST_GUESS" async inflation strategy inflates ahead of time for a
+     * screen, until the screen is destroyed or its controller is cleared. Applies to controllers
+     * created from now on.
+     */
+    @JvmStatic var asyncInflationMaxViewsPerScreen = 40
+
+    /**
+     * The manager whose pools every
+     * [com.yelp.android.bento.componentcontrollers.RecyclerViewComponentController] created from
+     * now on shares, including the ones Bento creates for nested components and pager pages. Null
+     * by default, in which case each controller keeps its own pool.
+     */
+    @JvmStatic var viewPoolManager: BentoViewPoolManager? = null
+
+    /**
+     * The scheduler running the background inflations of every
+     * [com.yelp.android.bento.componentcontrollers.RecyclerViewComponentController] created from
+     * now on. Set it before creating any controller to change the number of inflation threads.
+     * A replaced scheduler keeps running the inflations of existing controllers until it's shut
+     * down.
+     */
+    @JvmStatic var inflationScheduler = BentoInflationScheduler()
 }
@@ -11,7 +11,7 @@ import com.yelp.android.bento.core.Component
  */
 class ComponentUpdateCallback(val component: Component) : ListUpdateCallback {
     override fun onChanged(position: Int, count: Int, payload: Any?) {
-        component.notifyItemRangeChanged(position, count)
+        component.notifyItemRangeChanged(position, count, payload)
     }
 
     override fun onMoved(fromPosition: Int, toPosition: Int) {
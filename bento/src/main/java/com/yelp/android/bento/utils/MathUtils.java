@@ -8,54 +8,46 @@ public final class MathUtils {
     }
 
     /**
-     * Calculates the Least Common Multiple. Copied from
-     * http://www.geeksforgeeks.org/lcm-of-given-array-elements/
+     * Calculates the Least Common Multiple by folding {@link #lcm(int, int)} over the inputs.
      *
      * @param inputs An array of integers to calculate the lcm of.
      * @return The lcm of all the integers.
      */
     public static int lcm(int[] inputs) {
         int currentLcm = 1;
-        int divisor = 2;
-
-        // We iterate all values and reduce them by a common factor until they are all one.
-
-        // We loop until we find an lcm.
-        while (true) {
-            int counter = 0;
-            boolean divisible = false;
-            for (int i = 0; i < inputs.length; i++) {
-                if (inputs[i] == 0) {
-                    // lcm of any set of numbers including 0 must be 0.
-                    return 0;
-                } else if (inputs[i] < 0) {
-                    // This algorithm requires all values to be positive. Makes no difference in
-                    // result.
-                    inputs[i] = -inputs[i];
-                }
-
-                // This value is completely factored out. Mark it as complete.
-                if (inputs[i] == 1) {
-                    counter++;
-                }
-
-                // If it is divisible, factor out the common factor.
-                if (inputs[i] % divisor == 0) {
-                    divisible = true;
-                    inputs[i] = inputs[i] / divisor;
-                }
-            }
+        for (int input : inputs) {
+            currentLcm = lcm(currentLcm, input);
+        }
+        return currentLcm;
+    }
 
-            if (divisible) {
-                currentLcm *= divisor;
-            } else {
-                divisor++;
-            }
+    /**
+     * Calculates the Least Common Multiple of two integers from their Greatest Common Divisor.
+     *
+     * @return The lcm of both integers. Always positive, or zero if either integer is zero.
+     */
+    public static int lcm(int a, int b) {
+        if (a == 0 || b == 0) {
+            // lcm of any set of numbers including 0 must be 0.
+            return 0;
+        }
+        // Divide before multiplying to keep the intermediate value small.
+        return Math.abs(a / gcd(a, b) * b);
+    }
 
-            // If all values are 1, we have factored out all common factors. Return currentLcm.
-            if (counter == inputs.length) {
-                return currentLcm;
-            }
+    /**
+     * Calculates the Greatest Common Divisor using the Euclidean algorithm.
+     *
+     * @return The gcd of both integers. Always non-negative.
+     */
+    public static int gcd(int a, int b) {
+        a = Math.abs(a);
+        b = Math.abs(b);
+        while (b != 0) {
+            int remainder = a % b;
+            a = b;
+            b = remainder;
         }
+        return a;
     }
 }
@@ -4,7 +4,53 @@ import android.view.LayoutInflater
 import android.view.View
 import android.view.ViewGroup
 import androidx.annotation.LayoutRes
+import androidx.lifecycle.Lifecycle
+import androidx.lifecycle.LifecycleObserver
+import androidx.lifecycle.LifecycleOwner
+import androidx.lifecycle.OnLifecycleEvent
+import androidx.lifecycle.findViewTreeLifecycleOwner
+import androidx.lifecycle.lifecycleScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.launch
 
 inline fun <reified T : View> ViewGroup.inflate(@LayoutRes layout: Int): T {
     return LayoutInflater.from(context).inflate(layout, this, false) as T
 }
+
+/**
+ * Calls [action] when the lifecycle owning this view is destroyed. The owner is looked up once the
+ * view is attached to a window, falling back to the view's context.
+ */
+internal fun View.doOnLifecycleDestroy(action: () -> Unit) {
+    if (isAttachedToWindow) {
+        observeLifecycleDestroy(action)
+    } else {
+        addOnAttachStateChangeListener(object : View.OnAttachStateChangeListener {
+            override fun onViewAttachedToWindow(v: View) {
+                observeLifecycleDestroy(action)
+                removeOnAttachStateChangeListener(this)
+            }
+
+            override fun onViewDetachedFromWindow(v: View) = Unit
+        })
+    }
+}
+
+private fun View.observeLifecycleDestroy(action: () -> Unit) {
+    var owner = findViewTreeLifecycleOwner()
+    if (owner == null) {
+        if (context is LifecycleOwner) {
+            owner = context as LifecycleOwner
+        }
+    }
+    owner?.lifecycleScope?.launch(Dispatchers.Main.immediate) {
+        owner.lifecycle.addObserver(object : LifecycleObserver {
+
+            @OnLifecycleEvent(Lifecycle.Event.ON_DESTROY)
+            fun cleanUp() {
+                action()
+                owner.lifecycle.removeObserver(this)
+            }
+        })
+    }
+}
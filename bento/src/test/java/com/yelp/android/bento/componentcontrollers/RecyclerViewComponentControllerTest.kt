@@ -0,0 +1,190 @@
+package com.yelp.android.bento.componentcontrollers
+
+import android.content.Context
+import android.view.View.MeasureSpec
+import androidx.activity.ComponentActivity
+import androidx.recyclerview.widget.RecyclerView
+import androidx.test.core.app.ApplicationProvider
+import com.yelp.android.bento.componentcontrollers.RecyclerViewComponentController.PoolPolicy
+import com.yelp.android.bento.core.AsyncInflationBridge
+import com.yelp.android.bento.core.Component
+import com.yelp.android.bento.core.ComponentGroupTest
+import com.yelp.android.bento.core.ComponentViewHolder
+import com.yelp.android.bento.core.TestComponentViewHolder
+import com.yelp.android.bento.core.ViewPoolPrewarmer
+import com.yelp.android.bento.core.ViewTypeRegistry
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.test.TestCoroutineDispatcher
+import kotlinx.coroutines.test.setMain
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertSame
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mockito.kotlin.any
+import org.mockito.kotlin.anyOrNull
+import org.mockito.kotlin.doReturn
+import org.mockito.kotlin.never
+import org.mockito.kotlin.spy
+import org.mockito.kotlin.times
+import org.mockito.kotlin.verify
+import org.mockito.kotlin.whenever
+import org.robolectric.Robolectric
+import org.robolectric.RobolectricTestRunner
+
+/** Tests for [RecyclerViewComponentController]. */
+@ExperimentalCoroutinesApi
+@RunWith(RobolectricTestRunner::class)
+class RecyclerViewComponentControllerTest {
+
+    private lateinit var recyclerView: RecyclerView
+    private lateinit var pool: RecyclerView.RecycledViewPool
+
+    private val testDispatcher = TestCoroutineDispatcher()
+
+    @Before
+    fun setup() {
+        Dispatchers.setMain(testDispatcher)
+        val context: Context = ApplicationProvider.getApplicationContext()
+        recyclerView = RecyclerView(context)
+        pool = spy(RecyclerView.RecycledViewPool())
+        recyclerView.setRecycledViewPool(pool)
+    }
+
+    @Test
+    fun addAll_asyncWithComponentAlreadyAdded_addsTheOthers() {
+        val components = ComponentGroupTest.createMockComponents(3)
+        val controller = createAsyncController()
+        controller.addComponent(components[0])
+
+        controller.addAll(listOf(components[1], components[0], components[2], components[1]))
+
+        assertEquals(components, List(controller.size) { controller[it] })
+    }
+
+    @Test
+    fun bind_componentWithPoolHint_setsMaxRecycledViewsOnce() {
+        val component = ComponentGroupTest.createMockComponents(1)[0]
+        whenever(component.getRecyclePoolHint(anyOrNull())).doReturn(7)
+        RecyclerViewComponentController(recyclerView, false).addComponent(component)
+
+        val viewType = createAndBindViewHolder(0)
+        createAndBindViewHolder(0)
+
+        verify(pool, times(1)).setMaxRecycledViews(viewType, 7)
+    }
+
+    @Test
+    fun bind_afterNewPoolPolicy_appliesNewPolicy() {
+        val component = ComponentGroupTest.createMockComponents(1)[0]
+        whenever(component.getRecyclePoolHint(anyOrNull())).doReturn(7)
+        val controller = RecyclerViewComponentController(recyclerView, false)
+        controller.addComponent(component)
+        val viewType = createAndBindViewHolder(0)
+
+        controller.setPoolPolicy(PoolPolicy { _, _ -> 3 })
+        createAndBindViewHolder(0)
+
+        verify(pool).setMaxRecycledViews(viewType, 7)
+        verify(pool).setMaxRecycledViews(viewType, 3)
+    }
+
+    @Test
+    fun bind_componentWithoutPoolHint_leavesPoolAlone() {
+        val component = ComponentGroupTest.createMockComponents(1)[0]
+        whenever(component.getRecyclePoolHint(anyOrNull())).doReturn(Component.NO_POOL_HINT)
+        RecyclerViewComponentController(recyclerView, false).addComponent(component)
+
+        createAndBindViewHolder(0)
+
+        verify(pool, never()).setMaxRecycledViews(any(), any())
+    }
+
+    @Test
+    fun prewarm_putsViewHoldersInPoolUnderTheirViewType() {
+        val controller = createPrewarmingController()
+
+        controller.prewarm(prewarmCounts(2))
+
+        assertEquals(2, pool.getRecycledViewCount(testViewType()))
+    }
+
+    @Test
+    fun prewarm_recyclerViewReusesPrewarmedViewHolder() {
+        val controller = createPrewarmingController()
+        controller.prewarm(prewarmCounts(1))
+        val prewarmed = pool.getRecycledView(testViewType())!!
+        pool.putRecycledView(prewarmed)
+
+        controller.addComponent(ComponentGroupTest.createMockComponents(1)[0])
+        recyclerView.measure(
+                MeasureSpec.makeMeasureSpec(1080, MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(1920, MeasureSpec.EXACTLY))
+        recyclerView.layout(0, 0, 1080, 1920)
+
+        assertSame(prewarmed, recyclerView.getChildViewHolder(recyclerView.getChildAt(0)))
+        assertEquals(0, pool.getRecycledViewCount(testViewType()))
+    }
+
+    @Test
+    fun prewarm_poolFull_stopsPrewarming() {
+        val controller = createPrewarmingController()
+        pool.setMaxRecycledViews(testViewType(), 2)
+
+        controller.prewarm(prewarmCounts(5))
+
+        assertEquals(2, pool.getRecycledViewCount(testViewType()))
+        // The third view holder doesn't fit, so the last two are never inflated.
+        verify(pool, times(3)).putRecycledView(any())
+    }
+
+    @Test
+    fun prewarm_screenDestroyed_cancelsPendingInflations() {
+        val activityController = Robolectric.buildActivity(ComponentActivity::class.java).setup()
+        val activity = activityController.get()
+        val activityRecyclerView = RecyclerView(activity)
+        activity.setContentView(activityRecyclerView)
+        val pausedInflaterDispatcher = TestCoroutineDispatcher().apply { pauseDispatcher() }
+        val controller = RecyclerViewComponentController(activityRecyclerView, false)
+        controller.mViewPoolPrewarmer =
+                ViewPoolPrewarmer(activityRecyclerView, pausedInflaterDispatcher)
+
+        controller.prewarm(prewarmCounts(2))
+        activityController.destroy()
+        pausedInflaterDispatcher.resumeDispatcher()
+
+        assertEquals(0, activityRecyclerView.recycledViewPool.getRecycledViewCount(testViewType()))
+    }
+
+    /** Creates and binds a view holder for the position like the RecyclerView would. */
+    @Suppress("UNCHECKED_CAST")
+    private fun createAndBindViewHolder(position: Int): Int {
+        val adapter = recyclerView.adapter as RecyclerView.Adapter<RecyclerView.ViewHolder>
+        val viewType = adapter.getItemViewType(position)
+        adapter.bindViewHolder(adapter.createViewHolder(recyclerView, viewType), position)
+        return viewType
+    }
+
+    private fun createPrewarmingController(): RecyclerViewComponentController {
+        return RecyclerViewComponentController(recyclerView, false).apply {
+            mViewPoolPrewarmer = ViewPoolPrewarmer(recyclerView, testDispatcher)
+        }
+    }
+
+    private fun prewarmCounts(count: Int): Map<Class<out ComponentViewHolder<*, *>>, Int> {
+        return mapOf(TestComponentViewHolder::class.java to count)
+    }
+
+    private fun testViewType() = ViewTypeRegistry.getViewType(TestComponentViewHolder::class.java)
+
+    private fun createAsyncController(): RecyclerViewComponentController {
+        return RecyclerViewComponentController(recyclerView, RecyclerView.VERTICAL, true).apply {
+            mAsyncInflationBridge = AsyncInflationBridge(
+                    recyclerView,
+                    asyncInflaterDispatcher = testDispatcher,
+                    defaultBridgeDispatcher = testDispatcher
+            )
+        }
+    }
+}
@@ -12,6 +12,7 @@ import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.ExperimentalCoroutinesApi
 import kotlinx.coroutines.test.TestCoroutineDispatcher
 import kotlinx.coroutines.test.setMain
+import org.junit.Assert.assertEquals
 import org.junit.Assert.assertNotEquals
 import org.junit.Before
 import org.junit.Test
@@ -82,4 +83,55 @@ class AsyncInflationBridgeTest {
         val view2 = asyncInflationBridge.getView(viewHolder1!!)
         assertNotEquals(view, view2)
     }
+
+    @Test
+    fun asyncInflateViewsForComponents_twoComponents_addsBothInOneCallback() {
+        val components = ComponentGroupTest.createMockComponents(2)
+        val addedBatches = mutableListOf<List<Component>>()
+
+        asyncInflationBridge.asyncInflateViewsForComponents(components) { addedBatches.add(it) }
+
+        assertEquals(listOf(components), addedBatches)
+        val viewHolder = asyncInflationBridge.getViewHolder(TestComponentViewHolder::class.java)
+        val viewHolder1 = asyncInflationBridge.getViewHolder(TestComponentViewHolder::class.java)
+        assertNotNull(viewHolder)
+        assertNotNull(viewHolder1)
+        assertNotEquals(viewHolder, viewHolder1)
+    }
+
+    @Test
+    fun asyncInflateViewsForComponents_componentRemoved_leftOutOfCallback() {
+        val components = ComponentGroupTest.createMockComponents(2)
+        val addedBatches = mutableListOf<List<Component>>()
+        testDispatcher.pauseDispatcher()
+
+        asyncInflationBridge.asyncInflateViewsForComponents(components) { addedBatches.add(it) }
+        asyncInflationBridge.trackComponentRemoval(components[0])
+        testDispatcher.resumeDispatcher()
+
+        assertEquals(listOf(listOf(components[1])), addedBatches)
+    }
+
+    @Test
+    fun asyncInflateViewsForComponent_otherBridgeInflating_addsWithoutWaiting() {
+        val context: Context = ApplicationProvider.getApplicationContext()
+        val pausedInflaterDispatcher = TestCoroutineDispatcher().apply { pauseDispatcher() }
+        val busyBridge = AsyncInflationBridge(
+                RecyclerView(context).apply { layoutManager = LinearLayoutManager(context) },
+                asyncInflaterDispatcher = pausedInflaterDispatcher,
+                defaultBridgeDispatcher = testDispatcher
+        )
+        val components = ComponentGroupTest.createMockComponents(2)
+        val added = mutableListOf<Component>()
+
+        busyBridge.asyncInflateViewsForComponent(components[0]) { added.add(components[0]) }
+        asyncInflationBridge.asyncInflateViewsForComponent(components[1]) {
+            added.add(components[1])
+        }
+
+        assertEquals(listOf(components[1]), added)
+        assertEquals(0L, asyncInflationBridge.lockWaitTimeMs)
+        pausedInflaterDispatcher.resumeDispatcher()
+        assertEquals(components, added.reversed())
+    }
 }
@@ -0,0 +1,48 @@
+package com.yelp.android.bento.core
+
+import com.yelp.android.bento.core.InflationPriority.ABOVE_THE_FOLD
+import com.yelp.android.bento.core.InflationPriority.SPECULATIVE
+import com.yelp.android.bento.core.InflationPriority.VISIBLE_NEXT
+import java.util.Collections
+import java.util.concurrent.CountDownLatch
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class BentoInflationSchedulerTest {
+
+    private val scheduler = BentoInflationScheduler(1)
+
+    @After
+    fun tearDown() {
+        scheduler.shutdown()
+    }
+
+    @Test
+    fun dispatcher_queuedInflations_runByPriorityThenInOrder() {
+        val started = CountDownLatch(1)
+        val blocker = CountDownLatch(1)
+        val order = Collections.synchronizedList(mutableListOf<String>())
+
+        runBlocking {
+            // Keeps the only thread busy so the other inflations are queued.
+            launch(scheduler.dispatcher(ABOVE_THE_FOLD)) {
+                started.countDown()
+                blocker.await()
+            }
+            started.await()
+            launch(scheduler.dispatcher(SPECULATIVE)) { order.add("speculative") }
+            launch(scheduler.dispatcher(VISIBLE_NEXT)) { order.add("next 1") }
+            launch(scheduler.dispatcher(ABOVE_THE_FOLD)) { order.add("above the fold") }
+            launch(scheduler.dispatcher(VISIBLE_NEXT)) { order.add("next 2") }
+            blocker.countDown()
+        }
+
+        assertEquals(listOf("above the fold", "next 1", "next 2", "speculative"), order)
+    }
+}
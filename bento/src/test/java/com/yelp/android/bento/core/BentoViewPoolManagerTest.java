@@ -0,0 +1,109 @@
+package com.yelp.android.bento.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.ComponentCallbacks2;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+
+@RunWith(RobolectricTestRunner.class)
+public class BentoViewPoolManagerTest {
+
+    private BentoViewPoolManager mViewPoolManager;
+    private ActivityController<Activity> mActivityController;
+    private Activity mActivity;
+
+    @Before
+    public void setUp() {
+        mViewPoolManager =
+                new BentoViewPoolManager(
+                        (Application) ApplicationProvider.getApplicationContext());
+        mActivityController = Robolectric.buildActivity(Activity.class).setup();
+        mActivity = mActivityController.get();
+    }
+
+    @Test
+    public void test_GetPool_SharedWithinActivity() {
+        assertSame(mViewPoolManager.getPool(mActivity), mViewPoolManager.getPool(mActivity));
+
+        Activity otherActivity = Robolectric.buildActivity(Activity.class).setup().get();
+        assertNotSame(
+                mViewPoolManager.getPool(mActivity), mViewPoolManager.getPool(otherActivity));
+    }
+
+    @Test
+    public void test_GetPool_NoActivity_ReturnsNull() {
+        assertNull(mViewPoolManager.getPool(ApplicationProvider.getApplicationContext()));
+    }
+
+    @Test
+    public void test_GetPool_ActivityDestroyed_DropsPool() {
+        RecyclerView.RecycledViewPool pool = mViewPoolManager.getPool(mActivity);
+        int viewType = ViewTypeRegistry.getViewType(TestComponentViewHolder.class);
+        pool.putRecycledView(createViewHolder(viewType));
+
+        mActivityController.destroy();
+        assertEquals(0, pool.getRecycledViewCount(viewType));
+        assertNull(mViewPoolManager.getPool(mActivity));
+    }
+
+    @Test
+    public void test_SetCapacity_CapsRequestedLimit() {
+        RecyclerView.RecycledViewPool pool = mViewPoolManager.getPool(mActivity);
+        int viewType = ViewTypeRegistry.getViewType(TestComponentViewHolder.class);
+        pool.setMaxRecycledViews(viewType, 10);
+        mViewPoolManager.setCapacity(TestComponentViewHolder.class, 2);
+
+        for (int i = 0; i < 4; i++) {
+            pool.putRecycledView(createViewHolder(viewType));
+        }
+        assertEquals(2, pool.getRecycledViewCount(viewType));
+    }
+
+    @Test
+    public void test_OnTrimMemory_EmptiesPools() {
+        RecyclerView.RecycledViewPool pool = mViewPoolManager.getPool(mActivity);
+        int viewType = ViewTypeRegistry.getViewType(TestComponentViewHolder.class);
+        pool.putRecycledView(createViewHolder(viewType));
+
+        mViewPoolManager.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+        assertEquals(1, pool.getRecycledViewCount(viewType));
+        mViewPoolManager.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        assertEquals(0, pool.getRecycledViewCount(viewType));
+    }
+
+    private RecyclerView.ViewHolder createViewHolder(int viewType) {
+        RecyclerView.Adapter<RecyclerView.ViewHolder> adapter =
+                new RecyclerView.Adapter<RecyclerView.ViewHolder>() {
+                    @Override
+                    public RecyclerView.ViewHolder onCreateViewHolder(
+                            ViewGroup parent, int type) {
+                        return new RecyclerView.ViewHolder(new View(mActivity)) {};
+                    }
+
+                    @Override
+                    public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {}
+
+                    @Override
+                    public int getItemCount() {
+                        return 0;
+                    }
+                };
+        return adapter.createViewHolder(new RecyclerView(mActivity), viewType);
+    }
+}
@@ -0,0 +1,101 @@
+package com.yelp.android.bento.core;
+
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+import com.yelp.android.bento.components.ListComponent;
+import com.yelp.android.bento.core.Component.ComponentDataObserver;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+public class ComponentDataChangeBufferTest {
+
+    private ComponentDataChangeBuffer mBuffer;
+    private Component mComponent;
+    private ComponentDataObserver mObserver;
+
+    @Before
+    public void setup() {
+        mBuffer = new ComponentDataChangeBuffer();
+        mComponent = new ListComponent<>(null, null);
+        mObserver = mock(ComponentDataObserver.class);
+        mComponent.registerComponentDataObserver(mObserver);
+    }
+
+    @Test
+    public void test_AdjacentInsertions_Merged() {
+        mBuffer.onItemRangeInserted(2, 3);
+        mBuffer.onItemRangeInserted(5, 1);
+        mBuffer.onItemRangeInserted(2, 2);
+        mBuffer.dispatchTo(mComponent);
+
+        verify(mObserver).onItemRangeInserted(2, 6);
+        verifyNoMoreInteractions(mObserver);
+    }
+
+    @Test
+    public void test_RemovalOfInsertedItems_Cancelled() {
+        mBuffer.onItemRangeInserted(2, 3);
+        mBuffer.onItemRangeChanged(3, 1);
+        mBuffer.onItemRangeRemoved(2, 3);
+        assertTrue(mBuffer.isEmpty());
+        mBuffer.dispatchTo(mComponent);
+
+        verifyNoMoreInteractions(mObserver);
+    }
+
+    @Test
+    public void test_OverlappingChanges_Merged() {
+        mBuffer.onItemRangeChanged(4, 2);
+        mBuffer.onItemRangeChanged(1, 4);
+        mBuffer.onItemRangeRemoved(3, 1);
+        mBuffer.onItemRangeRemoved(1, 2);
+        mBuffer.dispatchTo(mComponent);
+
+        InOrder inOrder = inOrder(mObserver);
+        inOrder.verify(mObserver).onItemRangeChanged(1, 5);
+        inOrder.verify(mObserver).onItemRangeRemoved(1, 3);
+        verifyNoMoreInteractions(mObserver);
+    }
+
+    @Test
+    public void test_ChangesWithDifferentPayloads_NotMerged() {
+        Object payload = new Object();
+        mBuffer.onItemRangeChanged(0, 2, payload);
+        mBuffer.onItemRangeChanged(2, 1, payload);
+        mBuffer.onItemRangeChanged(1, 2);
+        mBuffer.dispatchTo(mComponent);
+
+        InOrder inOrder = inOrder(mObserver);
+        inOrder.verify(mObserver).onItemRangeChanged(0, 3, payload);
+        inOrder.verify(mObserver).onItemRangeChanged(1, 2);
+        verifyNoMoreInteractions(mObserver);
+    }
+
+    @Test
+    public void test_DataSetChange_ReplacesOtherChanges() {
+        mBuffer.onItemRangeInserted(0, 1);
+        mBuffer.onChanged();
+        mBuffer.onItemMoved(0, 2);
+        mBuffer.dispatchTo(mComponent);
+
+        verify(mObserver).onChanged();
+        verifyNoMoreInteractions(mObserver);
+        assertTrue(mBuffer.isEmpty());
+    }
+
+    @Test
+    public void test_DispatchTo_ClearsChanges() {
+        mBuffer.onItemMoved(0, 2);
+        assertFalse(mBuffer.isEmpty());
+        mBuffer.dispatchTo(mComponent);
+
+        verify(mObserver).onItemMoved(0, 2);
+        assertTrue(mBuffer.isEmpty());
+    }
+}
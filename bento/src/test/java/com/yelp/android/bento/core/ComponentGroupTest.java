@@ -9,14 +9,22 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import androidx.recyclerview.widget.GridLayoutManager.SpanSizeLookup;
 import com.yelp.android.bento.componentcontrollers.SimpleComponentViewHolder;
 import com.yelp.android.bento.components.ListComponent;
 import com.yelp.android.bento.components.SimpleComponent;
+import com.yelp.android.bento.core.Component.ComponentDataObserver;
+import com.yelp.android.bento.core.ComponentGroup.ComponentGroupDataObserver;
+import com.yelp.android.bento.utils.AccordionList.Range;
+import com.yelp.android.bento.utils.AccordionList.RangedValue;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.invocation.InvocationOnMock;
@@ -191,6 +199,22 @@ public class ComponentGroupTest {
         assertEquals(0, mComponentGroup.indexOf(subsequentComponent));
     }
 
+    @Test
+    public void insertAtFront_MaintainsValidIndices() {
+        List<Component> mockComponents = createMockComponents(50);
+        for (Component component : mockComponents) {
+            mComponentGroup.addComponent(0, component);
+        }
+        mComponentGroup.remove(mockComponents.get(10));
+
+        for (int i = 0; i < mockComponents.size(); i++) {
+            int expected = i == 10 ? -1 : i < 10 ? 48 - i : 49 - i;
+            assertEquals(expected, mComponentGroup.indexOf(mockComponents.get(i)));
+        }
+        assertEquals(new Range(0, 1), mComponentGroup.rangeOf(mockComponents.get(49)));
+        assertNull(mComponentGroup.rangeOf(mockComponents.get(10)));
+    }
+
     @Test
     public void test_NotifyRangeUpdated_ComponentRemoved_CallsNotifyItemRangeRemoved() {
         ListComponent<String, String> listComponent = new ListComponent<>(null, null);
@@ -336,6 +360,28 @@ public class ComponentGroupTest {
         assertEquals(14, offset);
     }
 
+    @Test
+    public void test_FindNestedComponentOffset_TracksChanges() {
+        ListComponent<String, String> first = createListComponent("a", "b");
+        ListComponent<String, String> nested = createListComponent("c");
+        ComponentGroup nestedGroup = new ComponentGroup();
+        nestedGroup.addComponent(createListComponent("x"));
+        nestedGroup.addComponent(nested);
+        ComponentGroup group = new ComponentGroup();
+        group.addComponent(first);
+        group.addComponent(nestedGroup);
+        assertEquals(3, group.findComponentOffset(nested));
+
+        first.appendData(Arrays.asList("d", "e"));
+        assertEquals(5, group.findComponentOffset(nested));
+
+        nestedGroup.remove(0);
+        assertEquals(4, group.findComponentOffset(nested));
+
+        group.remove(nestedGroup);
+        assertEquals(-1, group.findComponentOffset(nested));
+    }
+
     @Test
     public void test_GetNumberColumns_ReturnsCorrectAnswer() {
         List<Component> components = createMockComponents(3);
@@ -348,6 +394,392 @@ public class ComponentGroupTest {
         assertEquals(12, listComponent.getNumberLanes());
     }
 
+    @Test
+    public void test_GetNumberLanes_TracksNestedChanges() {
+        ComponentGroup nestedGroup = new ComponentGroup();
+        Component threeLanes = new ListComponent<>(null, null, 3);
+        nestedGroup.addComponent(threeLanes);
+
+        ComponentGroup group = new ComponentGroup();
+        group.addComponent(new ListComponent<>(null, null, 2));
+        group.addComponent(nestedGroup);
+        assertEquals(6, group.getNumberLanes());
+
+        nestedGroup.addComponent(new ListComponent<>(null, null, 4));
+        assertEquals(12, group.getNumberLanes());
+
+        nestedGroup.remove(threeLanes);
+        assertEquals(4, group.getNumberLanes());
+
+        group.clear();
+        assertEquals(1, group.getNumberLanes());
+    }
+
+    @Test
+    public void test_Batch_CoalescesNotifications() {
+        ComponentGroup group = new ComponentGroup();
+        group.addComponent(createListComponent("a"));
+        ComponentDataObserver observer = mock(ComponentDataObserver.class);
+        ComponentGroupDataObserver groupObserver = mock(ComponentGroupDataObserver.class);
+        group.registerComponentDataObserver(observer);
+        group.registerComponentGroupObserver(groupObserver);
+
+        group.beginBatch();
+        group.addComponent(createListComponent("b", "c"));
+        group.addComponent(createListComponent("d"));
+        group.addComponent(1, createListComponent("e"));
+        assertEquals(5, group.getSpan());
+        assertEquals("e", group.getItem(1));
+        verifyNoMoreInteractions(observer, groupObserver);
+
+        group.commit();
+        verify(observer).onItemRangeInserted(1, 4);
+        verify(groupObserver).onChanged();
+        verifyNoMoreInteractions(observer, groupObserver);
+    }
+
+    @Test
+    public void test_NestedBatch_NotifiesOnOutermostCommit() {
+        ComponentGroup group = new ComponentGroup();
+        ComponentDataObserver observer = mock(ComponentDataObserver.class);
+        group.registerComponentDataObserver(observer);
+
+        group.beginBatch();
+        group.addAll(Arrays.<Component>asList(createListComponent("a"), createListComponent("b")));
+        verifyNoMoreInteractions(observer);
+        assertTrue(group.isInBatch());
+
+        group.commit();
+        assertFalse(group.isInBatch());
+        verify(observer).onItemRangeInserted(0, 2);
+        verifyNoMoreInteractions(observer);
+    }
+
+    @Test
+    public void test_BatchThrows_StillCommits() {
+        ComponentGroup group = new ComponentGroup();
+        ComponentDataObserver observer = mock(ComponentDataObserver.class);
+        group.registerComponentDataObserver(observer);
+
+        try {
+            group.batch(
+                    () -> {
+                        group.addComponent(createListComponent("a"));
+                        throw new IllegalArgumentException();
+                    });
+        } catch (IllegalArgumentException expected) {
+            // The batch must be committed anyway.
+        }
+
+        assertFalse(group.isInBatch());
+        verify(observer).onItemRangeInserted(0, 1);
+    }
+
+    @Test
+    public void test_NestedGroupBatch_ParentSeesChangesOnCommit() {
+        ListComponent<String, String> first = createListComponent("a", "b");
+        ListComponent<String, String> removed = createListComponent("c");
+        ListComponent<String, String> added = createListComponent("d");
+        ComponentGroup nestedGroup = new ComponentGroup();
+        nestedGroup.addComponent(removed);
+        mComponentGroup.addComponent(first);
+        mComponentGroup.addComponent(nestedGroup);
+
+        nestedGroup.beginBatch();
+        nestedGroup.addComponent(0, added);
+        nestedGroup.remove(removed);
+        assertEquals(removed, mComponentGroup.findComponentWithIndex(2));
+        assertEquals(new Range(2, 3), mComponentGroup.findRangedComponentWithIndex(2).mRange);
+        assertEquals(-1, mComponentGroup.findComponentOffset(added));
+
+        nestedGroup.commit();
+        assertEquals(added, mComponentGroup.findComponentWithIndex(2));
+        assertEquals(new Range(2, 3), mComponentGroup.findRangedComponentWithIndex(2).mRange);
+        assertEquals(first, mComponentGroup.findComponentWithIndex(1));
+        assertEquals(2, mComponentGroup.findComponentOffset(added));
+        assertEquals(-1, mComponentGroup.findComponentOffset(removed));
+        assertEquals(3, mComponentGroup.getSpan());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void test_CommitWithoutBatch_Throws() {
+        new ComponentGroup().commit();
+    }
+
+    @Test
+    public void test_NotifyItemRangeChanged_PassesPayloadToObservers() {
+        ComponentGroup nestedGroup = new ComponentGroup();
+        ListComponent<String, String> listComponent = createListComponent("a", "b", "c");
+        nestedGroup.addComponent(listComponent);
+        mComponentGroup.addComponent(createListComponent("d"));
+        mComponentGroup.addComponent(nestedGroup);
+        ComponentDataObserver observer = mock(ComponentDataObserver.class);
+        mComponentGroup.registerComponentDataObserver(observer);
+        Object payload = new Object();
+
+        listComponent.notifyItemRangeChanged(1, 2, payload);
+        listComponent.notifyItemRangeChanged(0, 1);
+
+        verify(observer).onItemRangeChanged(2, 2, payload);
+        verify(observer).onItemRangeChanged(1, 1);
+        verifyNoMoreInteractions(observer);
+    }
+
+    @Test
+    public void test_GetItemId_GivesUniqueStableIds() {
+        ComponentGroup nestedGroup = new ComponentGroup();
+        ListComponent<String, String> nested = createStableListComponent("a", "b");
+        nested.setStartGap(10);
+        nestedGroup.addComponent(nested);
+        mComponentGroup.addComponent(createStableListComponent("a", "b"));
+        mComponentGroup.addComponent(nestedGroup);
+        assertTrue(mComponentGroup.hasStableIds());
+
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < mComponentGroup.getCount(); i++) {
+            ids.add(mComponentGroup.getItemId(i));
+        }
+        assertEquals(5, ids.size());
+        assertFalse(ids.contains(Component.NO_ID));
+
+        long idOfB = mComponentGroup.getItemId(1);
+        mComponentGroup.addComponent(0, createStableListComponent("c"));
+        assertEquals(idOfB, mComponentGroup.getItemId(2));
+    }
+
+    @Test
+    public void test_HasStableIds_TracksNestedChildren() {
+        ComponentGroup nestedGroup = new ComponentGroup();
+        nestedGroup.addComponent(createStableListComponent("a"));
+        mComponentGroup.addComponent(nestedGroup);
+        assertTrue(mComponentGroup.hasStableIds());
+
+        Component unstable = createListComponent("b");
+        nestedGroup.addComponent(unstable);
+        assertFalse(mComponentGroup.hasStableIds());
+        assertEquals(Component.NO_ID, mComponentGroup.getItemId(1));
+
+        nestedGroup.remove(unstable);
+        assertTrue(mComponentGroup.hasStableIds());
+    }
+
+    @Test
+    public void test_MoveComponent_NotifiesItemMoves() {
+        ComponentGroup group = new ComponentGroup();
+        ListComponent<String, String> first = createListComponent("a", "b");
+        ListComponent<String, String> second = createListComponent("c");
+        ListComponent<String, String> third = createListComponent("d", "e");
+        group.addAll(Arrays.asList(first, second, third));
+        ComponentDataObserver observer = mock(ComponentDataObserver.class);
+        group.registerComponentDataObserver(observer);
+
+        group.moveComponent(0, 2);
+        assertEquals(2, group.indexOf(first));
+        assertEquals(new Range(3, 5), group.rangeOf(first));
+        assertEquals("c", group.getItem(0));
+        assertEquals("a", group.getItem(3));
+        verify(observer, times(2)).onItemMoved(0, 4);
+
+        group.moveComponent(2, 0);
+        assertEquals(0, group.indexOf(first));
+        assertEquals(new Range(3, 5), group.rangeOf(third));
+        assertEquals("b", group.getItem(1));
+        verify(observer).onItemMoved(3, 0);
+        verify(observer).onItemMoved(4, 1);
+    }
+
+    @Test
+    public void test_SequentialGetItem_UsesPositionCursor() {
+        ComponentGroup group = new ComponentGroup();
+        group.setPositionCursorThread(Thread.currentThread());
+        group.addComponent(createListComponent("a", "b", "c"));
+        group.addComponent(createListComponent());
+        group.addComponent(createListComponent("d", "e"));
+
+        List<Object> items = new ArrayList<>();
+        for (int i = 0; i < group.getSpan(); i++) {
+            items.add(group.getItem(i));
+        }
+
+        assertEquals(Arrays.<Object>asList("a", "b", "c", "d", "e"), items);
+        // Only the very first lookup has to search.
+        assertEquals(0.8f, group.getPositionCursorHitRate(), 0.001f);
+    }
+
+    @Test
+    public void test_GroupBuiltOnAnotherThread_UsesPositionCursor() throws Exception {
+        // The test thread stands in for the main thread, which has no looper in plain JVM tests.
+        Thread lookupThread = Thread.currentThread();
+        ComponentGroup[] groups = new ComponentGroup[1];
+        Thread builder =
+                new Thread(
+                        () -> {
+                            ComponentGroup group = new ComponentGroup();
+                            group.setPositionCursorThread(lookupThread);
+                            group.addComponent(createListComponent("a", "b", "c"));
+                            group.addComponent(createListComponent("d", "e"));
+                            groups[0] = group;
+                        });
+        builder.start();
+        builder.join();
+
+        for (int i = 0; i < groups[0].getSpan(); i++) {
+            groups[0].getItem(i);
+        }
+
+        assertEquals(0.8f, groups[0].getPositionCursorHitRate(), 0.001f);
+    }
+
+    @Test
+    public void test_ChildChange_InvalidatesPositionCursor() {
+        ComponentGroup group = new ComponentGroup();
+        group.setPositionCursorThread(Thread.currentThread());
+        ListComponent<String, String> first = createListComponent("a", "b");
+        group.addComponent(first);
+        group.addComponent(createListComponent("c"));
+        assertEquals("c", group.getItem(2));
+
+        first.setData(Arrays.asList("a"));
+        assertEquals("c", group.getItem(1));
+        first.appendData(Arrays.asList("x", "y"));
+        assertEquals("y", group.getItem(2));
+        assertEquals("c", group.getItem(3));
+    }
+
+    @Test
+    public void test_FindRangedComponentWithIndex_DeeplyNested() {
+        ListComponent<String, String> first = createListComponent("a", "b");
+        ListComponent<String, String> deepest = createListComponent("c", "d", "e");
+        ComponentGroup innerGroup = new ComponentGroup();
+        innerGroup.addComponent(deepest);
+        ComponentGroup middleGroup = new ComponentGroup();
+        middleGroup.addComponent(innerGroup);
+        ComponentGroup group = new ComponentGroup();
+        group.addComponent(first);
+        group.addComponent(middleGroup);
+
+        RangedValue<Component> rangedValue = group.findRangedComponentWithIndex(3);
+        assertEquals(deepest, rangedValue.mValue);
+        assertEquals(new Range(2, 5), rangedValue.mRange);
+
+        // Changes deep in the hierarchy and additions above it keep the index up to date.
+        deepest.appendData(Arrays.asList("f"));
+        group.addComponent(0, createListComponent("z"));
+        rangedValue = group.findRangedComponentWithIndex(6);
+        assertEquals(deepest, rangedValue.mValue);
+        assertEquals(new Range(3, 7), rangedValue.mRange);
+
+        innerGroup.remove(deepest);
+        assertEquals(3, group.getSpan());
+        assertEquals(first, group.findComponentWithIndex(2));
+    }
+
+    @Test
+    public void test_FindRangedComponentWithIndex_NestedGroupGapChangedAfterAdding() {
+        ListComponent<String, String> first = createListComponent("a", "b");
+        ListComponent<String, String> deepest = createListComponent("c", "d", "e");
+        ComponentGroup innerGroup = new ComponentGroup();
+        innerGroup.addComponent(deepest);
+        ComponentGroup middleGroup = new ComponentGroup();
+        middleGroup.addComponent(innerGroup);
+        ComponentGroup group = new ComponentGroup();
+        group.addComponent(first);
+        group.addComponent(middleGroup);
+
+        innerGroup.setStartGap(10);
+        innerGroup.setEndGap(10);
+        innerGroup.notifyDataChanged();
+        assertEquals(innerGroup, group.findComponentWithIndex(2));
+        assertEquals(new Range(3, 6), group.findRangedComponentWithIndex(3).mRange);
+        assertEquals(innerGroup, group.findComponentWithIndex(6));
+
+        // Leaf changes deep in the hierarchy land after the new gap.
+        deepest.appendData(Arrays.asList("f"));
+        RangedValue<Component> rangedValue = group.findRangedComponentWithIndex(6);
+        assertEquals(deepest, rangedValue.mValue);
+        assertEquals(new Range(3, 7), rangedValue.mRange);
+        assertEquals(innerGroup, group.findComponentWithIndex(7));
+
+        innerGroup.setStartGap(0);
+        innerGroup.notifyDataChanged();
+        rangedValue = group.findRangedComponentWithIndex(2);
+        assertEquals(deepest, rangedValue.mValue);
+        assertEquals(new Range(2, 6), rangedValue.mRange);
+        group.addComponent(createListComponent("z"));
+        assertEquals(innerGroup, group.findComponentWithIndex(6));
+        assertEquals(8, group.getSpan());
+    }
+
+    @Test
+    public void test_GetGridSpanSize_ScalesToComponentLanes() {
+        ListComponent<String, String> twoLanes = new ListComponent<>(null, null, 2);
+        twoLanes.toggleDivider(false);
+        twoLanes.setData(new ArrayList<>(Arrays.asList("a", "b", "c")));
+        twoLanes.setStartGap(10);
+        ComponentGroup nestedGroup = new ComponentGroup();
+        nestedGroup.addComponent(twoLanes);
+        ListComponent<String, String> threeLanes = new ListComponent<>(null, null, 3);
+        threeLanes.toggleDivider(false);
+        threeLanes.setData(new ArrayList<>(Arrays.asList("d", "e")));
+        mComponentGroup.addComponent(nestedGroup);
+        mComponentGroup.addComponent(threeLanes);
+
+        assertEquals(6, mComponentGroup.getNumberLanes());
+        // The gap spans the whole row, each item a third or half of it.
+        assertEquals(6, mComponentGroup.getGridSpanSize(0, 6));
+        assertEquals(3, mComponentGroup.getGridSpanSize(1, 6));
+        assertEquals(3, mComponentGroup.getGridSpanSize(3, 6));
+        assertEquals(2, mComponentGroup.getGridSpanSize(4, 6));
+        assertEquals(4, mComponentGroup.getGridSpanSize(5, 12));
+    }
+
+    @Test
+    public void test_GetGridSpanSize_RespectsNestedGroupSpanSizeLookup() {
+        ListComponent<String, String> twoLanes = new ListComponent<>(null, null, 2);
+        twoLanes.toggleDivider(false);
+        twoLanes.setData(new ArrayList<>(Arrays.asList("a", "b")));
+        ComponentGroup nestedGroup = new ComponentGroup();
+        nestedGroup.addComponent(twoLanes);
+        // Every item takes the whole row instead of one lane.
+        nestedGroup.setSpanSizeLookup(
+                new SpanSizeLookup() {
+                    @Override
+                    public int getSpanSize(int position) {
+                        return 2;
+                    }
+                });
+        mComponentGroup.addComponent(nestedGroup);
+
+        assertEquals(2, mComponentGroup.getNumberLanes());
+        assertEquals(2, mComponentGroup.getGridSpanSize(0, 2));
+        assertEquals(4, mComponentGroup.getGridSpanSize(1, 4));
+    }
+
+    private static ListComponent<String, String> createListComponent(String... data) {
+        ListComponent<String, String> listComponent = new ListComponent<>(null, null);
+        listComponent.toggleDivider(false);
+        listComponent.setData(new ArrayList<>(Arrays.asList(data)));
+        return listComponent;
+    }
+
+    private static ListComponent<String, String> createStableListComponent(String... data) {
+        ListComponent<String, String> listComponent =
+                new ListComponent<String, String>(null, null) {
+                    @Override
+                    public boolean hasStableIds() {
+                        return true;
+                    }
+
+                    @Override
+                    public long getItemId(int position) {
+                        return getItem(position).hashCode();
+                    }
+                };
+        listComponent.toggleDivider(false);
+        listComponent.setData(new ArrayList<>(Arrays.asList(data)));
+        return listComponent;
+    }
+
     public static List<Component> createMockComponents(int numComponents) {
         List<Component> components = new ArrayList<>(numComponents);
         for (int i = 0; i < numComponents; i++) {
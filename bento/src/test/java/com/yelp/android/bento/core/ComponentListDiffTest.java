@@ -0,0 +1,169 @@
+package com.yelp.android.bento.core;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.yelp.android.bento.components.ListComponent;
+import com.yelp.android.bento.core.Component.ComponentDataObserver;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Unit tests for {@link ComponentListDiff}. */
+public class ComponentListDiffTest {
+
+    private ComponentGroup mComponentGroup;
+    private List<Component> mComponents;
+
+    @Before
+    public void setup() {
+        mComponentGroup = new ComponentGroup();
+        mComponents = new ArrayList<>();
+        for (String data : Arrays.asList("a", "b", "c", "d")) {
+            mComponents.add(createListComponent(data));
+        }
+        mComponentGroup.addAll(mComponents);
+    }
+
+    @Test
+    public void test_ApplyTo_OnlyMovesDisplacedComponents() {
+        ComponentDataObserver observer = mock(ComponentDataObserver.class);
+        mComponentGroup.registerComponentDataObserver(observer);
+        List<Component> newComponents =
+                Arrays.asList(
+                        mComponents.get(0), mComponents.get(2), mComponents.get(3),
+                        mComponents.get(1));
+
+        ComponentListDiff.calculate(mComponents, newComponents, null).applyTo(mComponentGroup);
+
+        assertChildren(newComponents);
+        verify(observer).onItemMoved(1, 3);
+        verify(observer, never()).onItemRangeInserted(anyInt(), anyInt());
+        verify(observer, never()).onItemRangeRemoved(anyInt(), anyInt());
+    }
+
+    @Test
+    public void test_ApplyTo_InsertsAndRemovesComponents() {
+        Component inserted = createListComponent("e");
+        List<Component> newComponents =
+                Arrays.asList(inserted, mComponents.get(3), mComponents.get(1));
+
+        ComponentListDiff diff = ComponentListDiff.calculate(mComponents, newComponents, null);
+        diff.applyTo(mComponentGroup);
+
+        assertChildren(newComponents);
+        assertEquals(Collections.singletonList(inserted), diff.getInsertedComponents());
+        assertEquals(2, diff.getRemovedComponents().size());
+        assertTrue(diff.getRemovedComponents().contains(mComponents.get(0)));
+        assertTrue(diff.getRemovedComponents().contains(mComponents.get(2)));
+    }
+
+    @Test
+    public void test_ApplyTo_ReplacesComponentsWithSameKey() {
+        ComponentListDiff.KeyProvider keyProvider = component -> component.getItem(0);
+        Component replacement = createListComponent("b");
+        List<Component> newComponents =
+                Arrays.asList(replacement, mComponents.get(0), mComponents.get(3));
+
+        ComponentListDiff diff =
+                ComponentListDiff.calculate(mComponents, newComponents, keyProvider);
+        diff.applyTo(mComponentGroup);
+
+        assertChildren(newComponents);
+        assertTrue(diff.getInsertedComponents().contains(replacement));
+        assertTrue(diff.getRemovedComponents().contains(mComponents.get(1)));
+    }
+
+    @Test
+    public void test_ApplyTo_SameKey_NotifiesChangeWithPayload() {
+        Object payload = new Object();
+        ComponentListDiff.KeyProvider keyProvider =
+                new ComponentListDiff.KeyProvider() {
+                    @Override
+                    public Object getKey(Component component) {
+                        return component.getItem(0);
+                    }
+
+                    @Override
+                    public Object getChangePayload(
+                            Component oldComponent, Component newComponent) {
+                        return payload;
+                    }
+                };
+        ComponentDataObserver observer = mock(ComponentDataObserver.class);
+        mComponentGroup.registerComponentDataObserver(observer);
+        List<Component> newComponents =
+                Arrays.asList(
+                        mComponents.get(0), createListComponent("b"), mComponents.get(2),
+                        mComponents.get(3));
+
+        ComponentListDiff.calculate(mComponents, newComponents, keyProvider)
+                .applyTo(mComponentGroup);
+
+        assertChildren(newComponents);
+        verify(observer).onItemRangeChanged(1, 1, payload);
+        verify(observer, never()).onItemRangeInserted(anyInt(), anyInt());
+        verify(observer, never()).onItemRangeRemoved(anyInt(), anyInt());
+    }
+
+    @Test
+    public void test_ApplyTo_ChildrenChanged_Throws() {
+        List<Component> newComponents = Arrays.asList(mComponents.get(3), mComponents.get(2));
+        ComponentListDiff diff = ComponentListDiff.calculate(mComponents, newComponents, null);
+        assertTrue(diff.matchesChildrenOf(mComponentGroup));
+        mComponentGroup.remove(mComponents.get(2));
+        mComponentGroup.addComponent(createListComponent("f"));
+        assertFalse(diff.matchesChildrenOf(mComponentGroup));
+
+        try {
+            diff.applyTo(mComponentGroup);
+            fail("The diff must not be applied to changed children.");
+        } catch (IllegalStateException expected) {
+            // The children are left as they are.
+        }
+        assertEquals(4, mComponentGroup.getSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_Calculate_DuplicateKeys_Throws() {
+        ComponentListDiff.calculate(
+                mComponents, Arrays.asList(mComponents.get(0), mComponents.get(0)), null);
+    }
+
+    @Test
+    public void test_ApplyTo_EmptyList_RemovesAllComponents() {
+        ComponentDataObserver observer = mock(ComponentDataObserver.class);
+        mComponentGroup.registerComponentDataObserver(observer);
+
+        ComponentListDiff.calculate(mComponents, Collections.<Component>emptyList(), null)
+                .applyTo(mComponentGroup);
+
+        assertEquals(0, mComponentGroup.getSize());
+        verify(observer, times(4)).onItemRangeRemoved(anyInt(), anyInt());
+    }
+
+    private void assertChildren(List<Component> expected) {
+        assertEquals(expected.size(), mComponentGroup.getSize());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), mComponentGroup.get(i));
+        }
+    }
+
+    private static ListComponent<String, String> createListComponent(String data) {
+        ListComponent<String, String> listComponent = new ListComponent<>(null, null);
+        listComponent.toggleDivider(false);
+        listComponent.setData(new ArrayList<>(Collections.singletonList(data)));
+        return listComponent;
+    }
+}
@@ -1,11 +1,19 @@
 package com.yelp.android.bento.core;
 
 import static junit.framework.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 
 import com.yelp.android.bento.components.ListComponent;
+import com.yelp.android.bento.core.Component.ComponentDataObserver;
+import java.util.Arrays;
 import org.junit.Before;
 import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
 
+@RunWith(RobolectricTestRunner.class)
 public class ComponentTest {
 
     private ListComponent<Void, Object> mListComponent;
@@ -58,4 +66,42 @@ public class ComponentTest {
         assertEquals(10, mListComponent.getItemInternal(0));
         assertEquals(20, mListComponent.getItemInternal(1));
     }
+
+    @Test
+    public void test_CoalesceNotifications_MergedBeforeReturning() {
+        mListComponent.toggleDivider(false);
+        ComponentDataObserver observer = mock(ComponentDataObserver.class);
+        mListComponent.registerComponentDataObserver(observer);
+
+        mListComponent.coalesceNotifications(
+                () -> {
+                    mListComponent.appendData(Arrays.<Object>asList("a", "b"));
+                    mListComponent.appendData(Arrays.<Object>asList("c"));
+                    mListComponent.notifyItemRangeChanged(0, 1);
+                    verifyNoMoreInteractions(observer);
+                });
+
+        verify(observer).onItemRangeInserted(0, 3);
+        verifyNoMoreInteractions(observer);
+    }
+
+    @Test
+    public void test_CoalesceNotifications_NestedCallsNotifyOnceOutermostReturns() {
+        mListComponent.toggleDivider(false);
+        ComponentDataObserver observer = mock(ComponentDataObserver.class);
+        mListComponent.registerComponentDataObserver(observer);
+
+        mListComponent.coalesceNotifications(
+                () -> {
+                    mListComponent.coalesceNotifications(
+                            () -> mListComponent.appendData(Arrays.<Object>asList("a", "b")));
+                    verifyNoMoreInteractions(observer);
+                    mListComponent.appendData(Arrays.<Object>asList("c"));
+                });
+        verify(observer).onItemRangeInserted(0, 3);
+
+        mListComponent.notifyItemRangeChanged(1, 1);
+        verify(observer).onItemRangeChanged(1, 1);
+        verifyNoMoreInteractions(observer);
+    }
 }
@@ -0,0 +1,59 @@
+package com.yelp.android.bento.core
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.mockito.kotlin.any
+import org.mockito.kotlin.doAnswer
+import org.mockito.kotlin.doReturn
+import org.mockito.kotlin.mock
+
+class InflationBudgetTest {
+
+    @Test
+    fun allocate_largeComponent_cappedPerComponent() {
+        val budget = InflationBudget(maxViewsPerComponent = 10, maxViewsPerScreen = 40)
+
+        assertEquals(10, budget.allocate(createComponent(100)).size)
+        assertEquals(10, budget.usedCount)
+    }
+
+    @Test
+    fun allocate_manyComponents_cappedPerScreenUntilReset() {
+        val budget = InflationBudget(maxViewsPerComponent = 10, maxViewsPerScreen = 15)
+
+        assertEquals(10, budget.allocate(createComponent(10)).size)
+        assertEquals(5, budget.allocate(createComponent(10)).size)
+        assertEquals(0, budget.allocate(createComponent(10)).size)
+
+        budget.reset()
+        assertEquals(10, budget.allocate(createComponent(10)).size)
+    }
+
+    @Test
+    fun allocate_mixedHolderTypes_picksOnePerNewTypeFirst() {
+        val budget = InflationBudget(maxViewsPerComponent = 2, maxViewsPerScreen = 40)
+        // Three view holders of one type followed by a gap.
+        val component = createComponent(4) { position ->
+            if (position < 3) TestComponentViewHolder::class.java else GapViewHolder::class.java
+        }
+
+        assertEquals(
+                listOf(TestComponentViewHolder::class.java, GapViewHolder::class.java),
+                budget.allocate(component))
+        assertEquals(
+                listOf(TestComponentViewHolder::class.java, TestComponentViewHolder::class.java),
+                budget.allocate(component))
+    }
+
+    private fun createComponent(
+        count: Int,
+        holderType: (Int) -> Class<out ComponentViewHolder<*, *>> = {
+            TestComponentViewHolder::class.java
+        }
+    ): Component {
+        return mock {
+            on { this.count } doReturn count
+            on { getHolderType(any()) } doAnswer { holderType(it.getArgument(0)) }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.yelp.android.bento.core
+
+import android.util.AtomicFile
+import java.io.File
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class SmartAsyncInflationCacheTest {
+
+    private val file = File.createTempFile("bento_async_inflation_cache", null)
+    private val atomicFile = AtomicFile(file)
+    private val classLoader = javaClass.classLoader!!
+
+    @After
+    fun tearDown() {
+        atomicFile.delete()
+    }
+
+    @Test
+    fun incrementForViewHolder_countsPerTypeInFirstNeededOrder() {
+        val name = "counts"
+        SmartAsyncInflationCache.incrementForViewHolder(name, TestComponentViewHolder::class.java)
+        SmartAsyncInflationCache.incrementForViewHolder(name, GapViewHolder::class.java)
+        SmartAsyncInflationCache.incrementForViewHolder(name, TestComponentViewHolder::class.java)
+
+        val demand = SmartAsyncInflationCache.getDemand(name)!!
+        assertEquals(
+                listOf(TestComponentViewHolder::class.java, GapViewHolder::class.java),
+                demand.viewHolderTypes)
+        assertEquals(2, demand.countOf(0))
+        assertEquals(1, demand.countOf(1))
+        assertEquals(3, demand.totalCount)
+    }
+
+    @Test
+    fun incrementForViewHolderIfMissing_onlyAddsNewTypesToKnownScreens() {
+        val name = "missing"
+        assertFalse(SmartAsyncInflationCache.incrementForViewHolderIfMissing(
+                name, TestComponentViewHolder::class.java))
+        assertNull(SmartAsyncInflationCache.getDemand(name)?.viewHolderTypes?.firstOrNull())
+
+        SmartAsyncInflationCache.incrementForViewHolder(name, TestComponentViewHolder::class.java)
+        assertFalse(SmartAsyncInflationCache.incrementForViewHolderIfMissing(
+                name, TestComponentViewHolder::class.java))
+        assertTrue(SmartAsyncInflationCache.incrementForViewHolderIfMissing(
+                name, GapViewHolder::class.java))
+        assertEquals(2, SmartAsyncInflationCache.getDemand(name)!!.totalCount)
+    }
+
+    @Test
+    fun getDemand_evictsLeastRecentlyUsedScreens() {
+        SmartAsyncInflationCache.incrementForViewHolder("lru0", GapViewHolder::class.java)
+        for (i in 1..30) {
+            SmartAsyncInflationCache.incrementForViewHolder("lru$i", GapViewHolder::class.java)
+            // Keeps the first screen in use.
+            SmartAsyncInflationCache.getDemand("lru0")
+        }
+
+        assertTrue(SmartAsyncInflationCache.containsKey("lru0"))
+        assertFalse(SmartAsyncInflationCache.containsKey("lru1"))
+    }
+
+    @Test
+    fun incrementForViewHolder_capsCount() {
+        val name = "cap"
+        repeat(1001) {
+            SmartAsyncInflationCache.incrementForViewHolder(name, GapViewHolder::class.java)
+        }
+
+        assertEquals(1000, SmartAsyncInflationCache.getDemand(name)!!.totalCount)
+    }
+
+    @Test
+    fun read_writtenCache_readsScreensInOrder() {
+        SmartAsyncInflationCache.write(atomicFile, 3L, listOf(
+                "first" to listOf(
+                        TestComponentViewHolder::class.java to 2, GapViewHolder::class.java to 1),
+                "second" to listOf(GapViewHolder::class.java to 4)))
+
+        val cache = SmartAsyncInflationCache.read(atomicFile, 3L, classLoader)
+        assertEquals(listOf("first", "second"), cache.keys.toList())
+        assertEquals(
+                listOf(TestComponentViewHolder::class.java to 2, GapViewHolder::class.java to 1),
+                cache.getValue("first").toList())
+        assertEquals(listOf(GapViewHolder::class.java to 4), cache.getValue("second").toList())
+    }
+
+    @Test
+    fun read_otherAppVersion_ignoresCache() {
+        SmartAsyncInflationCache.write(
+                atomicFile, 3L, listOf("screen" to listOf(GapViewHolder::class.java to 1)))
+
+        assertTrue(SmartAsyncInflationCache.read(atomicFile, 4L, classLoader).isEmpty())
+    }
+
+    @Test
+    fun read_unknownClassesAndInvalidCounts_skipsOnlyThoseEntries() {
+        SmartAsyncInflationCache.write(atomicFile, 3L, listOf(
+                "removed" to listOf(TestComponentViewHolder::class.java to 1),
+                "screen" to listOf(
+                        TestComponentViewHolder::class.java to 1,
+                        String::class.java to 1,
+                        GapViewHolder::class.java to 5000,
+                        GapViewHolder::class.java to 0,
+                        GapViewHolder::class.java to 2)))
+        // Acts as if the test view holder was removed since the cache was written.
+        val removedClassLoader = object : ClassLoader(classLoader) {
+            override fun loadClass(name: String, resolve: Boolean): Class<*> {
+                if (name == TestComponentViewHolder::class.java.name) {
+                    throw ClassNotFoundException(name)
+                }
+                return super.loadClass(name, resolve)
+            }
+        }
+
+        val cache = SmartAsyncInflationCache.read(atomicFile, 3L, removedClassLoader)
+        assertEquals(listOf("screen"), cache.keys.toList())
+        assertEquals(listOf(GapViewHolder::class.java to 2), cache.getValue("screen").toList())
+    }
+
+    @Test
+    fun read_typesThatCantBeInstantiated_skipsOnlyThoseEntries() {
+        SmartAsyncInflationCache.write(atomicFile, 3L, listOf(
+                "screen" to listOf(
+                        ComponentViewHolder::class.java to 1,
+                        TestComponentViewHolder::class.java to 1,
+                        GapViewHolder::class.java to 2)))
+        // Acts as if the test view holder depends on a class removed since the cache was written.
+        val brokenClassLoader = object : ClassLoader(classLoader) {
+            override fun loadClass(name: String, resolve: Boolean): Class<*> {
+                if (name == TestComponentViewHolder::class.java.name) {
+                    throw NoClassDefFoundError(name)
+                }
+                return super.loadClass(name, resolve)
+            }
+        }
+
+        val cache = SmartAsyncInflationCache.read(atomicFile, 3L, brokenClassLoader)
+        assertEquals(listOf(GapViewHolder::class.java to 2), cache.getValue("screen").toList())
+    }
+
+    @Test
+    fun read_corruptFile_deletesCache() {
+        SmartAsyncInflationCache.write(
+                atomicFile, 3L, listOf("screen" to listOf(GapViewHolder::class.java to 1)))
+        file.writeBytes(file.readBytes().copyOf(file.length().toInt() - 2))
+
+        assertTrue(SmartAsyncInflationCache.read(atomicFile, 3L, classLoader).isEmpty())
+        assertFalse(file.exists())
+    }
+
+    @Test
+    fun slice_repeatsTypesByCount() {
+        val demand = ViewHolderDemand(
+                listOf(TestComponentViewHolder::class.java, GapViewHolder::class.java),
+                intArrayOf(3, 2))
+
+        assertEquals(
+                listOf(TestComponentViewHolder::class.java, TestComponentViewHolder::class.java),
+                demand.slice(1, 3))
+        assertEquals(
+                listOf(TestComponentViewHolder::class.java, GapViewHolder::class.java),
+                demand.slice(2, 4))
+        assertEquals(emptyList<Class<*>>(), demand.slice(5, 5))
+    }
+
+    @Test
+    fun slice_putsMostNeededTypesFirst() {
+        val demand = ViewHolderDemand(
+                listOf(TestComponentViewHolder::class.java, GapViewHolder::class.java),
+                intArrayOf(1, 2))
+
+        assertEquals(
+                listOf(GapViewHolder::class.java, GapViewHolder::class.java),
+                demand.slice(0, 2))
+        assertEquals(listOf(TestComponentViewHolder::class.java), demand.slice(2, 3))
+    }
+
+    @Test
+    @Suppress("DEPRECATION")
+    fun get_expandsCountsInFirstNeededOrder() {
+        val name = "expanded"
+        SmartAsyncInflationCache.incrementForViewHolder(name, GapViewHolder::class.java)
+        SmartAsyncInflationCache.incrementForViewHolder(name, TestComponentViewHolder::class.java)
+        SmartAsyncInflationCache.incrementForViewHolder(name, GapViewHolder::class.java)
+
+        assertEquals(
+                listOf(
+                        GapViewHolder::class.java,
+                        GapViewHolder::class.java,
+                        TestComponentViewHolder::class.java),
+                SmartAsyncInflationCache[name])
+        assertNull(SmartAsyncInflationCache["unknown"])
+    }
+}
@@ -0,0 +1,67 @@
+package com.yelp.android.bento.core;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertTrue;
+
+import android.view.View;
+import android.view.ViewGroup;
+import org.junit.Test;
+
+/** Unit tests for {@link ViewHolderFactories}. */
+public class ViewHolderFactoriesTest {
+
+    @Test
+    public void test_Create_UsesRegisteredFactory() {
+        final int[] created = {0};
+        ViewHolderFactories.register(
+                ArgumentViewHolder.class,
+                () -> {
+                    created[0]++;
+                    return new ArgumentViewHolder("factory");
+                });
+
+        ArgumentViewHolder viewHolder = ViewHolderFactories.create(ArgumentViewHolder.class);
+
+        assertEquals("factory", viewHolder.mName);
+        assertEquals(1, created[0]);
+    }
+
+    @Test
+    public void test_Create_UnregisteredType_FallsBackToConstructor() {
+        TestComponentViewHolder first = ViewHolderFactories.create(TestComponentViewHolder.class);
+        TestComponentViewHolder second = ViewHolderFactories.create(TestComponentViewHolder.class);
+
+        assertTrue(first != null);
+        assertNotSame(first, second);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void test_Create_NoFactoryOrNoArgConstructor_Throws() {
+        ViewHolderFactories.create(UnregisteredViewHolder.class);
+    }
+
+    private static class ArgumentViewHolder extends ComponentViewHolder<Object, Object> {
+
+        private final String mName;
+
+        ArgumentViewHolder(String name) {
+            mName = name;
+        }
+
+        @Override
+        public View inflate(ViewGroup parent) {
+            return null;
+        }
+
+        @Override
+        public void bind(Object presenter, Object element) {}
+    }
+
+    private static class UnregisteredViewHolder extends ArgumentViewHolder {
+
+        UnregisteredViewHolder(String name) {
+            super(name);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.yelp.android.bento.core;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertTrue;
+
+import com.yelp.android.bento.componentcontrollers.SimpleComponentViewHolder;
+import org.junit.Test;
+
+/** Unit tests for {@link ViewTypeRegistry}. */
+public class ViewTypeRegistryTest {
+
+    @Test
+    public void test_GetViewType_IsStableAndReversible() {
+        int gapViewType = ViewTypeRegistry.getViewType(GapViewHolder.class);
+        int testViewType = ViewTypeRegistry.getViewType(TestComponentViewHolder.class);
+
+        assertTrue(gapViewType != testViewType);
+        assertEquals(gapViewType, ViewTypeRegistry.getViewType(GapViewHolder.class));
+        assertEquals(GapViewHolder.class, ViewTypeRegistry.getHolderType(gapViewType));
+        assertEquals(TestComponentViewHolder.class, ViewTypeRegistry.getHolderType(testViewType));
+    }
+
+    @Test
+    public void test_GetViewType_AllocatesDenseViewTypes() {
+        int first = ViewTypeRegistry.getViewType(GapViewHolder.class);
+        int second = ViewTypeRegistry.getViewType(SimpleComponentViewHolder.class);
+
+        assertTrue(first >= 0);
+        assertTrue(second >= 0);
+        assertNotSame(
+                ViewTypeRegistry.getHolderType(first), ViewTypeRegistry.getHolderType(second));
+        int highest = Math.max(first, second);
+        for (int viewType = 0; viewType <= highest; viewType++) {
+            // Every view type up to the highest one allocated has a holder class.
+            ViewTypeRegistry.getHolderType(viewType);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_GetHolderType_UnknownViewType_Throws() {
+        ViewTypeRegistry.getHolderType(-1);
+    }
+}
@@ -4,6 +4,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import com.yelp.android.bento.utils.AccordionList.Cursor;
 import com.yelp.android.bento.utils.AccordionList.Range;
 import com.yelp.android.bento.utils.AccordionList.RangedValue;
 import java.util.Iterator;
@@ -105,6 +106,59 @@ public class AccordionListTest {
         assertEquals(new RangedValue<>("a", new Range(2, 3)), list.rangedValueAt(2));
     }
 
+    @Test
+    public void test_InsertAddMiddleShiftsFollowing() {
+        AccordionList<String> list = new AccordionList<>();
+        list.add("a", 1);
+        list.add("c", 3);
+        list.add(1, "b", 2);
+        assertEquals(new RangedValue<>("a", new Range(0, 1)), list.get(0));
+        assertEquals(new RangedValue<>("b", new Range(1, 3)), list.get(1));
+        assertEquals(new RangedValue<>("c", new Range(3, 6)), list.get(2));
+        assertEquals("c", list.valueAt(5));
+    }
+
+    @Test
+    public void test_ZeroSizedEntriesAreSkipped() {
+        AccordionList<String> list = new AccordionList<>();
+        list.add("a", 1);
+        list.add("b", 0);
+        list.add("c", 1);
+        assertEquals("a", list.valueAt(0));
+        assertEquals("c", list.valueAt(1));
+        assertEquals(new RangedValue<>("b", new Range(1, 1)), list.get(1));
+    }
+
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void test_RangedValueAtOutOfBounds() {
+        AccordionList<String> list = new AccordionList<>();
+        list.add("a", 1);
+        list.rangedValueAt(1);
+    }
+
+    @Test
+    public void test_LocateFillsCursor() {
+        AccordionList<String> list = new AccordionList<>();
+        list.add("a", 2);
+        list.add("b", 3);
+        Cursor<String> cursor = new Cursor<>();
+        list.locate(3, cursor);
+        assertEquals(1, cursor.mEntryIndex);
+        assertEquals("b", cursor.mValue);
+        assertEquals(2, cursor.mLower);
+        assertEquals(5, cursor.mUpper);
+        assertEquals(1, cursor.mOffset);
+        assertTrue(cursor.contains(4));
+        assertFalse(cursor.contains(1));
+    }
+
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void test_LocateOutOfBounds() {
+        AccordionList<String> list = new AccordionList<>();
+        list.add("a", 2);
+        list.locate(-1, new Cursor<String>());
+    }
+
     @Test(expected = IndexOutOfBoundsException.class)
     public void test_SetZeroIndexOnEmpty() {
         AccordionList<String> list = new AccordionList<>();
@@ -125,6 +179,18 @@ public class AccordionListTest {
         list.set(2, "a", 1);
     }
 
+    @Test
+    public void test_SetResizeShiftsFollowing() {
+        AccordionList<String> list = new AccordionList<>();
+        list.add("a", 1);
+        list.add("b", 1);
+        list.add("c", 1);
+        list.set(1, "b", 4);
+        assertEquals(new RangedValue<>("c", new Range(5, 6)), list.get(2));
+        assertEquals(new RangedValue<>("b", new Range(1, 5)), list.rangedValueAt(4));
+        assertEquals(6, list.spanSize());
+    }
+
     @Test
     public void test_Remove() {
         AccordionList<String> list = new AccordionList<>();
@@ -139,6 +205,51 @@ public class AccordionListTest {
         list.remove(2);
     }
 
+    @Test
+    public void test_RemoveShiftsFollowing() {
+        AccordionList<String> list = new AccordionList<>();
+        list.add("a", 1);
+        list.add("b", 2);
+        list.add("c", 3);
+        list.remove(1);
+        assertEquals(2, list.size());
+        assertEquals(new RangedValue<>("c", new Range(1, 4)), list.get(1));
+        assertEquals(new Range(0, 4), list.span());
+    }
+
+    @Test
+    public void test_ManyInsertionsAtFront() {
+        AccordionList<Integer> list = new AccordionList<>();
+        for (int i = 0; i < 500; i++) {
+            list.add(0, i, 2);
+        }
+        assertEquals(500, list.size());
+        assertEquals(1000, list.spanSize());
+        for (int i = 0; i < 500; i++) {
+            assertEquals(new RangedValue<>(499 - i, new Range(2 * i, 2 * i + 2)), list.get(i));
+            assertEquals(Integer.valueOf(499 - i), list.valueAt(2 * i + 1));
+        }
+    }
+
+    @Test
+    public void test_IndexOfEntry() {
+        AccordionList<String> list = new AccordionList<>();
+        AccordionList.Entry<String> b = list.add("b", 1);
+        AccordionList.Entry<String> a = list.add(0, "a", 2);
+        AccordionList.Entry<String> c = list.add("c", 3);
+        assertEquals(0, list.indexOf(a));
+        assertEquals(1, list.indexOf(b));
+        assertEquals(2, list.indexOf(c));
+
+        list.remove(0);
+        assertEquals(-1, list.indexOf(a));
+        assertEquals(0, list.indexOf(b));
+        assertEquals(1, list.indexOf(c));
+
+        list.clear();
+        assertEquals(-1, list.indexOf(c));
+    }
+
     @Test
     public void test_IsEmptyTrue() {
         AccordionList<String> list = new AccordionList<>();
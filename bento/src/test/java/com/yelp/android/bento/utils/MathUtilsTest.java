@@ -0,0 +1,39 @@
+package com.yelp.android.bento.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/** Unit tests for {@link MathUtils}. */
+public class MathUtilsTest {
+
+    @Test
+    public void test_Gcd() {
+        assertEquals(6, MathUtils.gcd(12, 18));
+        assertEquals(1, MathUtils.gcd(7, 9));
+        assertEquals(5, MathUtils.gcd(0, 5));
+        assertEquals(4, MathUtils.gcd(-8, 12));
+    }
+
+    @Test
+    public void test_LcmPair() {
+        assertEquals(12, MathUtils.lcm(4, 6));
+        assertEquals(7, MathUtils.lcm(1, 7));
+        assertEquals(0, MathUtils.lcm(0, 7));
+        assertEquals(12, MathUtils.lcm(-4, 6));
+    }
+
+    @Test
+    public void test_LcmArray() {
+        assertEquals(12, MathUtils.lcm(new int[] {2, 3, 4}));
+        assertEquals(60, MathUtils.lcm(new int[] {1, 2, 3, 4, 5, 6}));
+        assertEquals(0, MathUtils.lcm(new int[] {2, 0, 3}));
+        assertEquals(1, MathUtils.lcm(new int[] {}));
+    }
+
+    @Test
+    public void test_LcmLargeInputsDoNotOverflowEarly() {
+        // Multiplying before dividing would overflow an int here.
+        assertEquals(65536 * 6, MathUtils.lcm(65536 * 2, 65536 * 3));
+    }
+}